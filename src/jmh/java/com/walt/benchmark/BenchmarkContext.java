@@ -0,0 +1,136 @@
+package com.walt.benchmark;
+
+import com.walt.WaltApplication;
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.entity.City;
+import com.walt.entity.Customer;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.Restaurant;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.repository.CrudRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+
+/**
+ * Boots the application without a web server against a private in-memory H2 database and seeds
+ * it with {@code cities} cities, each with one restaurant and one customer, {@code drivers}
+ * drivers spread evenly over the cities and {@code deliveries} past deliveries.
+ * <p>
+ * Deliveries are assigned round robin, one hour slot after the other starting at
+ * {@link #FIRST_DELIVERY}, so every slot from {@link #getFirstFreeSlot()} on is free for all
+ * drivers.
+ */
+@Getter
+class BenchmarkContext implements AutoCloseable {
+
+    static final LocalDateTime FIRST_DELIVERY = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final int SEED_BATCH_SIZE = 50_000;
+
+    private final ConfigurableApplicationContext applicationContext;
+    private final List<City> cities;
+    private final List<Restaurant> restaurants;
+    private final List<Customer> customers;
+    private final List<Driver> drivers;
+    private final LocalDateTime firstFreeSlot;
+
+    private BenchmarkContext(ConfigurableApplicationContext applicationContext,
+                             List<City> cities,
+                             List<Restaurant> restaurants,
+                             List<Customer> customers,
+                             List<Driver> drivers,
+                             LocalDateTime firstFreeSlot) {
+        this.applicationContext = applicationContext;
+        this.cities = cities;
+        this.restaurants = restaurants;
+        this.customers = customers;
+        this.drivers = drivers;
+        this.firstFreeSlot = firstFreeSlot;
+    }
+
+    /**
+     * Starts the application, overriding its configuration with the given {@code key=value}
+     * properties, and seeds the database.
+     */
+    static BenchmarkContext start(String databaseName,
+                                  int cityCount,
+                                  int driverCount,
+                                  int deliveryCount,
+                                  String... properties) {
+        // passed as command line arguments, which take precedence over application.properties
+        String[] arguments = Stream.concat(Stream.of("spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MYSQL",
+                                                     "spring.main.banner-mode=off",
+                                                     "logging.level.root=WARN"),
+                                           Arrays.stream(properties))
+                                   .map(property -> "--" + property)
+                                   .toArray(String[]::new);
+        ConfigurableApplicationContext applicationContext =
+                new SpringApplicationBuilder(WaltApplication.class)
+                        .web(WebApplicationType.NONE)
+                        .run(arguments);
+
+        List<City> cities = save(applicationContext.getBean(CityRepository.class),
+                                 IntStream.range(0, cityCount)
+                                          .mapToObj(i -> new City("city-" + i))
+                                          .collect(Collectors.toList()));
+        List<Restaurant> restaurants = save(applicationContext.getBean(RestaurantRepository.class),
+                                            cities.stream()
+                                                  .map(city -> new Restaurant("restaurant-" + city.getName(), city, "main street"))
+                                                  .collect(Collectors.toList()));
+        List<Customer> customers = save(applicationContext.getBean(CustomerRepository.class),
+                                        cities.stream()
+                                              .map(city -> new Customer("customer-" + city.getName(), city, "side street"))
+                                              .collect(Collectors.toList()));
+        List<Driver> drivers = applicationContext.getBean(DriverRepository.class)
+                                                 .saveAll(IntStream.range(0, driverCount)
+                                                                   .mapToObj(i -> new Driver("driver-" + i, cities.get(i % cityCount)))
+                                                                   .collect(Collectors.toList()));
+
+        DeliveryRepository deliveryRepository = applicationContext.getBean(DeliveryRepository.class);
+        for (int from = 0; from < deliveryCount; from += SEED_BATCH_SIZE) {
+            List<Delivery> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = from; i < Math.min(from + SEED_BATCH_SIZE, deliveryCount); i++) {
+                int city = i % driverCount % cityCount;
+                batch.add(new Delivery(drivers.get(i % driverCount),
+                                       restaurants.get(city),
+                                       customers.get(city),
+                                       FIRST_DELIVERY.plusHours(i / driverCount),
+                                       i % 21));
+            }
+            deliveryRepository.insertAll(batch);
+        }
+
+        LocalDateTime firstFreeSlot = FIRST_DELIVERY.plusHours((deliveryCount + driverCount - 1L) / driverCount);
+        return new BenchmarkContext(applicationContext, cities, restaurants, customers, drivers, firstFreeSlot);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return applicationContext.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        applicationContext.close();
+    }
+
+    private static <T> List<T> save(CrudRepository<T, Long> repository, List<T> entities) {
+        List<T> saved = new ArrayList<>();
+        repository.saveAll(entities).forEach(saved::add);
+        return saved;
+    }
+}
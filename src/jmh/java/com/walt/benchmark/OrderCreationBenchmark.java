@@ -0,0 +1,105 @@
+package com.walt.benchmark;
+
+import com.walt.entity.City;
+import com.walt.entity.Delivery;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
+import com.walt.service.WaltService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order throughput of the write path under concurrent load with different JDBC batch sizes and
+ * connection pool sizes, e.g. {@code -p jdbcBatchSize=1,50 -p poolSize=4,16}. Throughput is in
+ * orders per second for both the single order and the batch endpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class OrderCreationBenchmark {
+
+    private static final int ORDERS_PER_BATCH = 100;
+
+    @Param({"1", "50"})
+    private String jdbcBatchSize;
+
+    @Param("16")
+    private String poolSize;
+
+    @Param("10")
+    private int cities;
+
+    @Param("1000")
+    private int drivers;
+
+    private final AtomicLong orderSequence = new AtomicLong();
+    private BenchmarkContext context;
+    private WaltService waltService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("order-creation-benchmark", cities, drivers, 0,
+                                         "spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize,
+                                         "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                                         "spring.datasource.hikari.minimum-idle=" + poolSize);
+        waltService = context.getBean(WaltService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Delivery createOrderAndAssignDriver() {
+        long order = orderSequence.getAndIncrement();
+        int city = (int) (order % cities);
+        return waltService.createOrderAndAssignDriver(context.getCustomers().get(city),
+                                                      context.getRestaurants().get(city),
+                                                      deliveryTimeOf(order));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS_PER_BATCH)
+    public List<OrderResult> createOrdersAndAssignDrivers() {
+        long firstOrder = orderSequence.getAndAdd(ORDERS_PER_BATCH);
+        List<OrderRequest> orders = new ArrayList<>(ORDERS_PER_BATCH);
+        for (long order = firstOrder; order < firstOrder + ORDERS_PER_BATCH; order++) {
+            City city = context.getCities().get((int) (order % cities));
+            orders.add(new OrderRequest("customer-" + city.getName(), "side street",
+                                        "restaurant-" + city.getName(), deliveryTimeOf(order)));
+        }
+        return waltService.createOrdersAndAssignDrivers(orders);
+    }
+
+    /**
+     * Every city gets one order per driver and hour slot, so an available driver is always found.
+     */
+    private LocalDateTime deliveryTimeOf(long order) {
+        return context.getFirstFreeSlot().plusHours(order / drivers);
+    }
+}
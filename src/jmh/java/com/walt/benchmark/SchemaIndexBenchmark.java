@@ -0,0 +1,107 @@
+package com.walt.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query times of the repository lookups with and without the lookup indexes of the
+ * {@code V2__add_lookup_indexes} migration: {@code -p schemaVersion=1} drops them again after
+ * seeding, as the entities need the later migrations. The statements are the ones Hibernate issues for the repository methods, run
+ * through JDBC so the repository caches do not hide the database.
+ * <p>
+ * {@code (driver_id, delivery_time)} is indexed in both versions, by the unique booking
+ * constraint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaIndexBenchmark {
+
+    private static final String FIND_DRIVER_BY_NAME =
+            "select id from named_entity where dtype = 'Driver' and name = ?";
+    private static final String FIND_DRIVERS_BY_CITY =
+            "select id from named_entity where dtype = 'Driver' and city_id = ?";
+    private static final String FIND_DELIVERIES_BY_DRIVER =
+            "select id from delivery where driver_id = ?";
+    private static final String COUNT_DELIVERIES_BETWEEN =
+            "select count(*) from delivery where delivery_time >= ? and delivery_time < ?";
+    private static final List<String> LOOKUP_INDEXES =
+            List.of("ix_named_entity_type_name", "ix_named_entity_city", "ix_delivery_time");
+
+    @Param({"1", "2"})
+    private String schemaVersion;
+
+    @Param("10")
+    private int cities;
+
+    @Param("1000")
+    private int drivers;
+
+    @Param("1000000")
+    private int deliveries;
+
+    private BenchmarkContext context;
+    private JdbcTemplate jdbcTemplate;
+    private long seededHours;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("schema-index-benchmark", cities, drivers, deliveries);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        if ("1".equals(schemaVersion)) {
+            LOOKUP_INDEXES.forEach(index -> jdbcTemplate.execute("drop index " + index));
+        }
+        seededHours = Math.max(1, deliveries / drivers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Long> findDriverByName() {
+        String name = "driver-" + ThreadLocalRandom.current().nextInt(drivers);
+        return jdbcTemplate.queryForList(FIND_DRIVER_BY_NAME, Long.class, name);
+    }
+
+    @Benchmark
+    public List<Long> findDriversByCity() {
+        Long cityId = context.getCities().get(ThreadLocalRandom.current().nextInt(cities)).getId();
+        return jdbcTemplate.queryForList(FIND_DRIVERS_BY_CITY, Long.class, cityId);
+    }
+
+    @Benchmark
+    public List<Long> findDeliveriesByDriver() {
+        Long driverId = context.getDrivers().get(ThreadLocalRandom.current().nextInt(drivers)).getId();
+        return jdbcTemplate.queryForList(FIND_DELIVERIES_BY_DRIVER, Long.class, driverId);
+    }
+
+    @Benchmark
+    public Long countDeliveriesOfAnHour() {
+        LocalDateTime from = BenchmarkContext.FIRST_DELIVERY.plusHours(ThreadLocalRandom.current().nextLong(seededHours));
+        return jdbcTemplate.queryForObject(COUNT_DELIVERIES_BETWEEN, Long.class,
+                                           Timestamp.valueOf(from), Timestamp.valueOf(from.plusHours(1)));
+    }
+}
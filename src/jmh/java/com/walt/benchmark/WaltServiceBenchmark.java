@@ -0,0 +1,97 @@
+package com.walt.benchmark;
+
+import com.walt.entity.City;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverDistance;
+import com.walt.service.WaltService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and latency percentiles of the {@link WaltService} hot paths. Data volumes are JMH
+ * parameters, e.g. {@code -p cities=100 -p drivers=100000 -p deliveries=10000000}; large volumes
+ * need a bigger heap, e.g. {@code -jvmArgs -Xmx8g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaltServiceBenchmark {
+
+    @Param("10")
+    private int cities;
+
+    @Param("1000")
+    private int drivers;
+
+    @Param("100000")
+    private int deliveries;
+
+    private final AtomicLong orderSequence = new AtomicLong();
+    private BenchmarkContext context;
+    private WaltService waltService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("walt-service-benchmark", cities, drivers, deliveries);
+        waltService = context.getBean(WaltService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Every city gets one order per free hour slot, so an available driver is always found.
+     */
+    @Benchmark
+    public Delivery createOrderAndAssignDriver() {
+        long order = orderSequence.getAndIncrement();
+        int city = (int) (order % cities);
+        LocalDateTime deliveryTime = context.getFirstFreeSlot().plusHours(order / cities);
+        return waltService.createOrderAndAssignDriver(context.getCustomers().get(city),
+                                                      context.getRestaurants().get(city),
+                                                      deliveryTime);
+    }
+
+    @Benchmark
+    public Optional<Driver> locateDriverForDeliveryAt() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        City city = context.getCities().get(random.nextInt(cities));
+        LocalDateTime deliveryTime = BenchmarkContext.FIRST_DELIVERY.plusHours(random.nextInt(deliveries / drivers + 1));
+        return waltService.locateDriverForDeliveryAt(city.getName(), deliveryTime);
+    }
+
+    @Benchmark
+    public List<DriverDistance> getDriverRankReport() {
+        return waltService.getDriverRankReport();
+    }
+
+    @Benchmark
+    public List<DriverDistance> getDriverRankReportByCity() {
+        return waltService.getDriverRankReportByCity(context.getCities().get(ThreadLocalRandom.current().nextInt(cities)));
+    }
+}
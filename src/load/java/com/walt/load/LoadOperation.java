@@ -0,0 +1,34 @@
+package com.walt.load;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * The requests mixed by the load test, with their default share of the mix and p99 SLO.
+ */
+@Getter
+enum LoadOperation {
+    LOCATE_DRIVER("locate-driver", 60, Duration.ofMillis(200)),
+    CREATE_ORDER("create-order", 10, Duration.ofMillis(400)),
+    LIST_DRIVERS("list-drivers", 15, Duration.ofMillis(250)),
+    LEADERBOARD("leaderboard", 15, Duration.ofMillis(200));
+
+    private final String key;
+    private final int defaultWeight;
+    private final Duration defaultP99;
+
+    LoadOperation(String key, int defaultWeight, Duration defaultP99) {
+        this.key = key;
+        this.defaultWeight = defaultWeight;
+        this.defaultP99 = defaultP99;
+    }
+
+    static LoadOperation ofKey(String key) {
+        return Arrays.stream(values())
+                     .filter(operation -> operation.key.equals(key))
+                     .findFirst()
+                     .orElseThrow(() -> new IllegalArgumentException("Unknown load operation " + key));
+    }
+}
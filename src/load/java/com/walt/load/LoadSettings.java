@@ -0,0 +1,78 @@
+package com.walt.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * Data volume, concurrency, request mix and SLOs of a load test run, read from {@code load.*}
+ * system properties, e.g.
+ * {@code -Dload.threads=16 -Dload.duration=60s -Dload.mix=locate-driver:80,create-order:20}.
+ * <p>
+ * Every operation of the mix has a p99 SLO, {@code load.slo.<operation>.p99}, which defaults to
+ * the operation's own; a p999 SLO, {@code load.slo.<operation>.p999}, and a minimum throughput
+ * over all operations, {@code load.slo.min-throughput} in requests per second, are only checked
+ * when set.
+ */
+@Value
+class LoadSettings {
+
+    int cities;
+    int drivers;
+    int deliveries;
+    int threads;
+    Duration warmup;
+    Duration duration;
+    Map<LoadOperation, Integer> mix;
+    Map<LoadOperation, Duration> p99Slos;
+    Map<LoadOperation, Duration> p999Slos;
+    double minThroughput;
+    Path result;
+
+    static LoadSettings fromSystemProperties() {
+        Map<LoadOperation, Integer> mix = new EnumMap<>(LoadOperation.class);
+        String mixSpec = System.getProperty("load.mix");
+        if (mixSpec == null || mixSpec.isBlank()) {
+            for (LoadOperation operation : LoadOperation.values()) {
+                mix.put(operation, operation.getDefaultWeight());
+            }
+        } else {
+            for (String share : mixSpec.split(",")) {
+                String[] keyAndWeight = share.trim().split(":");
+                mix.put(LoadOperation.ofKey(keyAndWeight[0].trim()), Integer.parseInt(keyAndWeight[1].trim()));
+            }
+        }
+
+        Map<LoadOperation, Duration> p99Slos = new EnumMap<>(LoadOperation.class);
+        Map<LoadOperation, Duration> p999Slos = new EnumMap<>(LoadOperation.class);
+        for (LoadOperation operation : mix.keySet()) {
+            p99Slos.put(operation, duration("load.slo." + operation.getKey() + ".p99", operation.getDefaultP99()));
+            Duration p999 = duration("load.slo." + operation.getKey() + ".p999", null);
+            if (p999 != null) {
+                p999Slos.put(operation, p999);
+            }
+        }
+
+        return new LoadSettings(Integer.getInteger("load.cities", 10),
+                                Integer.getInteger("load.drivers", 1000),
+                                Integer.getInteger("load.deliveries", 100_000),
+                                Integer.getInteger("load.threads", 8),
+                                duration("load.warmup", Duration.ofSeconds(10)),
+                                duration("load.duration", Duration.ofSeconds(30)),
+                                mix,
+                                p99Slos,
+                                p999Slos,
+                                Double.parseDouble(System.getProperty("load.slo.min-throughput", "0")),
+                                Path.of(System.getProperty("load.result", "target/load-test-result.json")));
+    }
+
+    private static Duration duration(String property, Duration defaultValue) {
+        String value = System.getProperty(property);
+        return value != null && !value.isBlank() ? DurationStyle.detectAndParse(value) : defaultValue;
+    }
+}
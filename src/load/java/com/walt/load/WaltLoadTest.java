@@ -0,0 +1,370 @@
+package com.walt.load;
+
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.entity.City;
+import com.walt.entity.Customer;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.Restaurant;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the application on a random port against a private in-memory H2 database, seeds it as
+ * configured by {@link LoadSettings} and sends a weighted mix of driver lookups, orders and
+ * listings over HTTP from {@code load.threads} threads, first for the warmup and then for the
+ * measured duration. Latency percentiles and throughput per operation are printed and written as
+ * JSON to {@code load.result}, and the run fails when an SLO is missed or a request fails.
+ * <p>
+ * The seeded deliveries fill one hour slot after the other from {@link #FIRST_DELIVERY}, so
+ * drivers are located in the free slots before it and orders are placed in the free slots after
+ * the last seeded one, a slot per driver and city in turn, so a driver is always found.
+ * <p>
+ * Every thread sends its next request as soon as the previous one is answered, so a stall delays
+ * the requests behind it instead of being recorded by each of them: the percentiles are those of
+ * the answered requests, not of a fixed arrival rate.
+ * <p>
+ * The {@code /api} endpoints are stateless, so every request is authenticated with basic auth.
+ * The test compares the password in plain text: the configured one is otherwise re-hashed with
+ * bcrypt once it is first used, and checking that hash costs more than most requests themselves.
+ * The latencies therefore leave out the password check a deployed application pays on every
+ * request, and the report says so next to them.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = {"spring.datasource.url=jdbc:h2:mem:load-test;MODE=MYSQL",
+                              "spring.main.banner-mode=off",
+                              "logging.level.root=WARN"})
+public class WaltLoadTest {
+
+    private static final LocalDateTime FIRST_DELIVERY = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final int SEED_BATCH_SIZE = 50_000;
+    private static final int FREE_HOURS_TO_LOCATE = 10_000;
+    private static final int DRIVERS_PAGE_SIZE = 100;
+    private static final int LEADERBOARD_SIZE = 10;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String AUTHENTICATION = "basic auth, plain-text password check (no bcrypt)";
+
+    @LocalServerPort
+    private int port;
+    @Value("${spring.security.user.name}")
+    private String userName;
+    @Value("${spring.security.user.password}")
+    private String password;
+    @Autowired
+    private CityRepository cityRepository;
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private DriverRepository driverRepository;
+    @Autowired
+    private DeliveryRepository deliveryRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LoadSettings settings = LoadSettings.fromSystemProperties();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+                                                    .version(HttpClient.Version.HTTP_1_1)
+                                                    .connectTimeout(REQUEST_TIMEOUT)
+                                                    .build();
+    private final AtomicLong orderSequence = new AtomicLong();
+    private List<City> cities;
+    private List<Driver> drivers;
+    private LocalDateTime firstFreeSlot;
+
+    @Test
+    public void underTheConfiguredMix_everyOperationMeetsItsSlos() throws Exception {
+        seed();
+
+        run(settings.getWarmup());
+        Run measured = run(settings.getDuration());
+        report(measured);
+
+        List<String> violations = sloViolations(measured);
+        assertTrue(violations.isEmpty(), () -> "SLOs missed:\n" + String.join("\n", violations));
+    }
+
+    private void seed() {
+        cities = save(cityRepository, IntStream.range(0, settings.getCities())
+                                               .mapToObj(i -> new City("city-" + i))
+                                               .collect(Collectors.toList()));
+        List<Restaurant> restaurants = save(restaurantRepository,
+                                            cities.stream()
+                                                  .map(city -> new Restaurant("restaurant-" + city.getName(), city, "main street"))
+                                                  .collect(Collectors.toList()));
+        List<Customer> customers = save(customerRepository,
+                                        cities.stream()
+                                              .map(city -> new Customer("customer-" + city.getName(), city, "side street"))
+                                              .collect(Collectors.toList()));
+        drivers = driverRepository.saveAll(IntStream.range(0, settings.getDrivers())
+                                                    .mapToObj(i -> new Driver("driver-" + i, cities.get(i % cities.size())))
+                                                    .collect(Collectors.toList()));
+
+        int driverCount = drivers.size();
+        for (int from = 0; from < settings.getDeliveries(); from += SEED_BATCH_SIZE) {
+            List<Delivery> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = from; i < Math.min(from + SEED_BATCH_SIZE, settings.getDeliveries()); i++) {
+                int city = i % driverCount % cities.size();
+                batch.add(new Delivery(drivers.get(i % driverCount),
+                                       restaurants.get(city),
+                                       customers.get(city),
+                                       FIRST_DELIVERY.plusHours(i / driverCount),
+                                       i % 21));
+            }
+            deliveryRepository.insertAll(batch);
+        }
+        firstFreeSlot = FIRST_DELIVERY.plusHours((settings.getDeliveries() + driverCount - 1L) / driverCount);
+    }
+
+    private Run run(Duration duration) throws InterruptedException {
+        Map<LoadOperation, OperationStats> stats = new EnumMap<>(LoadOperation.class);
+        List<LoadOperation> wheel = new ArrayList<>();
+        settings.getMix().forEach((operation, weight) -> {
+            stats.put(operation, new OperationStats());
+            for (int i = 0; i < weight; i++) {
+                wheel.add(operation);
+            }
+        });
+
+        ExecutorService workers = Executors.newFixedThreadPool(settings.getThreads());
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (int i = 0; i < settings.getThreads(); i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    LoadOperation operation = wheel.get(ThreadLocalRandom.current().nextInt(wheel.size()));
+                    send(requestFor(operation), stats.get(operation));
+                }
+            });
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(duration.plus(REQUEST_TIMEOUT).toMillis(), TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+        }
+        return new Run(stats, (System.nanoTime() - start) / 1e9);
+    }
+
+    private void send(HttpRequest request, OperationStats stats) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            stats.record(System.nanoTime() - start, response.statusCode() / 100 == 2);
+        } catch (IOException e) {
+            stats.record(System.nanoTime() - start, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpRequest requestFor(LoadOperation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        City city = cities.get(random.nextInt(cities.size()));
+        switch (operation) {
+            case LOCATE_DRIVER:
+                LocalDateTime freeSlot = FIRST_DELIVERY.minusHours(1 + random.nextInt(FREE_HOURS_TO_LOCATE));
+                return request("/api/drivers/locate/" + city.getName() + "/" + freeSlot).GET().build();
+            case CREATE_ORDER:
+                return request("/api/orders/batch").header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                                   .POST(HttpRequest.BodyPublishers.ofByteArray(toJson(List.of(nextOrder()))))
+                                                   .build();
+            case LIST_DRIVERS:
+                Long after = drivers.get(random.nextInt(drivers.size())).getId();
+                return request("/api/drivers?limit=" + DRIVERS_PAGE_SIZE + "&after=" + after).GET().build();
+            case LEADERBOARD:
+                return request("/api/leaderboard/" + city.getName() + "?limit=" + LEADERBOARD_SIZE).GET().build();
+            default:
+                throw new IllegalArgumentException("No request for " + operation);
+        }
+    }
+
+    private OrderRequest nextOrder() {
+        long order = orderSequence.getAndIncrement();
+        City city = cities.get((int) (order % cities.size()));
+        return new OrderRequest("customer-" + city.getName(), "side street", "restaurant-" + city.getName(),
+                                firstFreeSlot.plusHours(order / drivers.size()));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        String credentials = Base64.getEncoder()
+                                   .encodeToString((userName + ":" + password).getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                          .timeout(REQUEST_TIMEOUT)
+                          .header(HttpHeaders.AUTHORIZATION, "Basic " + credentials);
+    }
+
+    private byte[] toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void report(Run run) throws IOException {
+        StringBuilder table = new StringBuilder(String.format("authentication: %s%n", AUTHENTICATION));
+        table.append(String.format("%-14s %9s %9s %9s %9s %9s %9s %7s%n", "operation", "requests", "req/s",
+                                   "p50 ms", "p99 ms", "p999 ms", "max ms", "errors"));
+        Map<String, Object> operations = new LinkedHashMap<>();
+        run.getStats().forEach((operation, stats) -> {
+            long requests = stats.getLatencies().getTotalCount();
+            table.append(String.format("%-14s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d%n", operation.getKey(), requests,
+                                       requests / run.getSeconds(), stats.millisAt(50), stats.millisAt(99),
+                                       stats.millisAt(99.9), stats.millisAt(100), stats.getErrors().sum()));
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requests", requests);
+            result.put("throughput", requests / run.getSeconds());
+            result.put("p50Millis", stats.millisAt(50));
+            result.put("p99Millis", stats.millisAt(99));
+            result.put("p999Millis", stats.millisAt(99.9));
+            result.put("maxMillis", stats.millisAt(100));
+            result.put("errors", stats.getErrors().sum());
+            operations.put(operation.getKey(), result);
+        });
+        table.append(String.format("%-14s %9d %9.1f%n", "total", run.getRequests(), run.getThroughput()));
+        System.out.print(table);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("settings", settings);
+        result.put("authentication", AUTHENTICATION);
+        result.put("throughput", run.getThroughput());
+        result.put("operations", operations);
+        Path resultPath = settings.getResult().toAbsolutePath();
+        Files.createDirectories(resultPath.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(resultPath.toFile(), result);
+    }
+
+    private List<String> sloViolations(Run run) {
+        List<String> violations = new ArrayList<>();
+        run.getStats().forEach((operation, stats) -> {
+            long errors = stats.getErrors().sum();
+            if (errors > 0) {
+                violations.add(String.format("%s: %d of %d requests failed", operation.getKey(), errors,
+                                             stats.getLatencies().getTotalCount()));
+            }
+            checkPercentile(violations, operation, stats, "p99", 99, settings.getP99Slos().get(operation));
+            checkPercentile(violations, operation, stats, "p999", 99.9, settings.getP999Slos().get(operation));
+        });
+        if (run.getThroughput() < settings.getMinThroughput()) {
+            violations.add(String.format("throughput %.1f req/s below the minimum of %.1f req/s",
+                                         run.getThroughput(), settings.getMinThroughput()));
+        }
+        return violations;
+    }
+
+    private static void checkPercentile(List<String> violations,
+                                        LoadOperation operation,
+                                        OperationStats stats,
+                                        String name,
+                                        double percentile,
+                                        Duration slo) {
+        if (slo != null && stats.getLatencies().getValueAtPercentile(percentile) > slo.toNanos()) {
+            violations.add(String.format("%s: %s %.2f ms over the SLO of %d ms", operation.getKey(), name,
+                                         stats.millisAt(percentile), slo.toMillis()));
+        }
+    }
+
+    private static <T> List<T> save(CrudRepository<T, Long> repository, List<T> entities) {
+        List<T> saved = new ArrayList<>();
+        repository.saveAll(entities).forEach(saved::add);
+        return saved;
+    }
+
+    @TestConfiguration
+    static class PlainTextPasswords {
+
+        @Bean
+        @SuppressWarnings("deprecation")
+        PasswordEncoder passwordEncoder() {
+            return NoOpPasswordEncoder.getInstance();
+        }
+    }
+
+    /**
+     * Latencies, in nanoseconds, and failed requests of one operation.
+     */
+    @Getter
+    private static class OperationStats {
+        private final Histogram latencies = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+
+        void record(long nanos, boolean succeeded) {
+            latencies.recordValue(nanos);
+            if (!succeeded) {
+                errors.increment();
+            }
+        }
+
+        double millisAt(double percentile) {
+            return latencies.getValueAtPercentile(percentile) / 1e6;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Run {
+        private final Map<LoadOperation, OperationStats> stats;
+        private final double seconds;
+
+        long getRequests() {
+            return stats.values().stream().mapToLong(operation -> operation.getLatencies().getTotalCount()).sum();
+        }
+
+        double getThroughput() {
+            return getRequests() / seconds;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.walt.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables caching of the city and driver lookups. The caches are Caffeine caches, bounded in
+ * size and age by {@code spring.cache.caffeine.spec}, and are emptied by the repositories on
+ * every write and by the {@link com.walt.service.EntityChangeListener} on every change flushed
+ * otherwise. Their hit, miss and eviction counts are published as {@code cache.*} metrics.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String CITIES_BY_NAME = "citiesByName";
+    public static final String DRIVERS_BY_NAME = "driversByName";
+}
@@ -0,0 +1,14 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Schedules the periodic compaction of the delivery rollups.
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(DeliveryRollupProperties.class)
+public class DeliveryRollupConfig {
+}
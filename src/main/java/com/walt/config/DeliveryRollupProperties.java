@@ -0,0 +1,30 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+/**
+ * Retention of the delivery rollups, see {@code walt.rollups.*}. Weekly buckets are kept forever.
+ */
+@Data
+@ConfigurationProperties(prefix = "walt.rollups")
+public class DeliveryRollupProperties {
+
+    /**
+     * How long hourly buckets are kept before compaction drops them.
+     */
+    private Duration hourRetention = Duration.ofDays(30);
+
+    /**
+     * How long daily buckets are kept before compaction drops them.
+     */
+    private Duration dayRetention = Duration.ofDays(730);
+
+    /**
+     * Pause between two compactions.
+     */
+    private Duration compactionInterval = Duration.ofHours(1);
+}
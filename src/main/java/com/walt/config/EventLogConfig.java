@@ -0,0 +1,9 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(EventLogProperties.class)
+public class EventLogConfig {
+}
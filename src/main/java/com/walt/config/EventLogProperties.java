@@ -0,0 +1,39 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import lombok.Data;
+
+/**
+ * Delivery event log and snapshots the availability index is rebuilt from on startup, see
+ * {@code walt.event-log.*}. Only useful with a database which outlives the application, e.g. a
+ * file based H2 url.
+ */
+@Data
+@ConfigurationProperties(prefix = "walt.event-log")
+public class EventLogProperties {
+
+    /**
+     * Whether assignments are logged and the index is restored from the log on startup.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory of the log segments and the snapshot.
+     */
+    private Path directory = Paths.get("data", "event-log");
+
+    /**
+     * Records per log segment file.
+     */
+    private int segmentRecords = 1 << 20;
+
+    /**
+     * Pause between two snapshots, each folding the closed log segments into the snapshot.
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+}
@@ -0,0 +1,25 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor of the order intake workers. Each worker blocks on the intake queue for as long as
+ * the application runs, so the pool has exactly one thread per configured worker.
+ */
+@Configuration
+@EnableConfigurationProperties(OrderIntakeProperties.class)
+public class OrderIntakeConfig {
+
+    public static final String ORDER_INTAKE_EXECUTOR = "orderIntakeExecutor";
+
+    @Bean(name = ORDER_INTAKE_EXECUTOR, destroyMethod = "shutdownNow")
+    public ExecutorService orderIntakeExecutor(OrderIntakeProperties properties) {
+        return Executors.newFixedThreadPool(properties.getWorkers(), new CustomizableThreadFactory("order-intake-"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+/**
+ * Sizing of the asynchronous order intake, see {@code walt.orders.intake.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "walt.orders.intake")
+public class OrderIntakeProperties {
+
+    /**
+     * Orders waiting for a worker; submissions beyond it are rejected.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Worker threads draining the queue.
+     */
+    private int workers = 2;
+
+    /**
+     * Most orders a worker assigns and inserts in one batch.
+     */
+    private int batchSize = 100;
+
+    /**
+     * How long the status of an order can be polled after it was last updated.
+     */
+    private Duration statusTtl = Duration.ofMinutes(10);
+
+    /**
+     * Most order statuses kept for polling; the least recently used are dropped beyond it.
+     */
+    private long statusMaximumSize = 100_000;
+}
@@ -0,0 +1,28 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Fork-join pool the rank report splits its cities over. It is separate from the common pool, so
+ * a report neither competes with parallel streams elsewhere nor uses more threads than configured.
+ */
+@Configuration
+@EnableConfigurationProperties(RankReportProperties.class)
+public class RankReportConfig {
+
+    public static final String RANK_REPORT_POOL = "rankReportPool";
+
+    @Bean(name = RANK_REPORT_POOL, destroyMethod = "shutdownNow")
+    public ForkJoinPool rankReportPool(RankReportProperties properties) {
+        return new ForkJoinPool(properties.getParallelism(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("rank-report-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+}
@@ -0,0 +1,18 @@
+package com.walt.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Sizing of the rank report computation, see {@code walt.rank-report.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "walt.rank-report")
+public class RankReportProperties {
+
+    /**
+     * Threads ranking the drivers of different cities in parallel.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+}
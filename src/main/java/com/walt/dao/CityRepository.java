@@ -2,12 +2,38 @@ package com.walt.dao;
 
 import com.walt.entity.City;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
+import static com.walt.config.CacheConfig.CITIES_BY_NAME;
+import static com.walt.config.CacheConfig.DRIVERS_BY_NAME;
+
 @Repository
 public interface CityRepository extends CrudRepository<City, Long> {
+    @Cacheable(CITIES_BY_NAME)
     Optional<City> findByName(String cityName);
+
+    /*
+     * The drivers by name are emptied as well, their summaries carry the name of the city.
+     */
+
+    @Override
+    @CacheEvict(cacheNames = {CITIES_BY_NAME, DRIVERS_BY_NAME}, allEntries = true)
+    <S extends City> S save(S city);
+
+    @Override
+    @CacheEvict(cacheNames = {CITIES_BY_NAME, DRIVERS_BY_NAME}, allEntries = true)
+    <S extends City> Iterable<S> saveAll(Iterable<S> cities);
+
+    @Override
+    @CacheEvict(cacheNames = {CITIES_BY_NAME, DRIVERS_BY_NAME}, allEntries = true)
+    void delete(City city);
+
+    @Override
+    @CacheEvict(cacheNames = {CITIES_BY_NAME, DRIVERS_BY_NAME}, allEntries = true)
+    void deleteAll();
 }
@@ -1,10 +1,18 @@
 package com.walt.dao;
 
 import com.walt.entity.Customer;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface CustomerRepository extends CrudRepository<Customer, Long> {
+    @EntityGraph(attributePaths = "city")
     Customer findByName(String name);
+
+    @EntityGraph(attributePaths = "city")
+    List<Customer> findAllByNameIn(Collection<String> names);
 }
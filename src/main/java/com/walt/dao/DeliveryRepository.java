@@ -1,18 +1,86 @@
 package com.walt.dao;
 
+import com.walt.entity.City;
 import com.walt.entity.Delivery;
+import com.walt.entity.DeliverySummary;
 import com.walt.entity.Driver;
+import com.walt.entity.DriverBooking;
+import com.walt.entity.DriverDeliveryStats;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface DeliveryRepository extends JpaRepository<Delivery, Long> {
+public interface DeliveryRepository extends JpaRepository<Delivery, Long>, DeliveryRepositoryCustom {
+
+    /**
+     * Only the columns of a {@link DeliverySummary}: the driver, restaurant and customer are
+     * joined for their names, nothing else of them is read.
+     */
+    String SELECT_SUMMARIES =
+            "select new com.walt.entity.DeliverySummary(d.id, dr.id, dr.name, r.id, r.name, c.id, c.name, " +
+            "d.deliveryTime, d.endTime, d.distance) " +
+            "from Delivery d left join d.driver dr left join d.restaurant r left join d.customer c ";
+
+    /**
+     * The writes below are implemented by {@link DeliveryRepositoryCustom}, which checks new
+     * deliveries for overlaps; redeclared so they take precedence over the inherited ones.
+     */
+    @Override
+    <S extends Delivery> S save(S delivery);
 
+    @Override
+    <S extends Delivery> List<S> saveAll(Iterable<S> deliveries);
+
+    @Override
+    <S extends Delivery> S saveAndFlush(S delivery);
+
+    @Override
+    <S extends Delivery> List<S> saveAllAndFlush(Iterable<S> deliveries);
 
     List<Delivery> findAllByDriver(Driver driver);
+
+    @Query(SELECT_SUMMARIES + "order by d.id")
+    List<DeliverySummary> findAllSummaries();
+
+    @Query(SELECT_SUMMARIES + "where d.id > :id order by d.id")
+    List<DeliverySummary> findSummariesAfter(@Param("id") Long id, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_SUMMARIES + "order by d.id")
+    Stream<DeliverySummary> streamAllSummaries();
+
+    @Query("select new com.walt.entity.DriverDeliveryStats(d.driver.id, count(d), sum(d.distance)) " +
+           "from Delivery d where d.driver.city = :city group by d.driver.id")
+    List<DriverDeliveryStats> findDeliveryStatsByCity(@Param("city") City city);
+
+    @Query("select new com.walt.entity.DriverDeliveryStats(d.driver.id, count(d), sum(d.distance)) " +
+           "from Delivery d group by d.driver.id")
+    List<DriverDeliveryStats> findDeliveryStats();
+
+    @Query("select new com.walt.entity.DriverBooking(d.driver.id, d.deliveryTime, d.endTime) " +
+           "from Delivery d where d.driver.city = :city")
+    List<DriverBooking> findBookingsByCity(@Param("city") City city);
+
+    @Query("select new com.walt.entity.DriverBooking(d.driver.id, d.deliveryTime, d.endTime) from Delivery d")
+    List<DriverBooking> findAllBookings();
+
+    /**
+     * The highest delivery id, 0 without deliveries.
+     */
+    @Query("select coalesce(max(d.id), 0) from Delivery d")
+    long findMaxId();
 }
 
 
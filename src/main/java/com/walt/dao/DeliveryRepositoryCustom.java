@@ -0,0 +1,37 @@
+package com.walt.dao;
+
+import com.walt.entity.Delivery;
+
+import java.util.List;
+
+/**
+ * Writes of new deliveries, which are rejected with a
+ * {@link org.springframework.dao.DataIntegrityViolationException} when a delivery's window overlaps
+ * another delivery of its driver. The unique key on the driver and start time only catches
+ * identical starts, so the drivers are locked and their deliveries around the new windows checked
+ * before the insert.
+ */
+public interface DeliveryRepositoryCustom {
+
+    /**
+     * Inserts new deliveries with JDBC batches in a single transaction and sets their generated
+     * ids. Either all deliveries are inserted or none.
+     */
+    void insertAll(List<Delivery> deliveries);
+
+    /**
+     * Saves a delivery like {@link org.springframework.data.repository.CrudRepository#save}; a new
+     * one is checked for overlaps first.
+     */
+    <S extends Delivery> S save(S delivery);
+
+    /**
+     * Saves deliveries like {@link #save}, in a single transaction; the new ones are checked for
+     * overlaps together, among themselves as well.
+     */
+    <S extends Delivery> List<S> saveAll(Iterable<S> deliveries);
+
+    <S extends Delivery> S saveAndFlush(S delivery);
+
+    <S extends Delivery> List<S> saveAllAndFlush(Iterable<S> deliveries);
+}
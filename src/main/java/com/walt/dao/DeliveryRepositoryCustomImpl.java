@@ -0,0 +1,176 @@
+package com.walt.dao;
+
+import com.walt.entity.Delivery;
+import com.walt.entity.DriverBooking;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+class DeliveryRepositoryCustomImpl implements DeliveryRepositoryCustom {
+
+    private static final String INSERT_DELIVERY =
+            "insert into delivery (id, driver_id, restaurant_id, customer_id, delivery_time, end_time, distance) " +
+            "values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String LOCK_DRIVERS =
+            "select id from named_entity where id in (%s) order by id for update";
+    private static final String FIND_BOOKINGS =
+            "select driver_id, delivery_time, end_time from delivery " +
+            "where driver_id in (%s) and delivery_time < ? and end_time > ?";
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    /**
+     * Ids are taken from the same generator Hibernate uses for {@link Delivery}, so they come from
+     * the sequence in blocks and never collide with deliveries saved through the entity manager.
+     */
+    @Override
+    @Transactional
+    public void insertAll(List<Delivery> deliveries) {
+        if (deliveries.isEmpty()) {
+            return;
+        }
+        checkNoOverlaps(deliveries);
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator idGenerator = session.getFactory()
+                                                 .getMetamodel()
+                                                 .entityPersister(Delivery.class)
+                                                 .getIdentifierGenerator();
+        for (Delivery delivery : deliveries) {
+            delivery.setId((Long) idGenerator.generate(session, delivery));
+        }
+        jdbcTemplate.batchUpdate(INSERT_DELIVERY, deliveries, BATCH_SIZE, (statement, delivery) -> {
+            statement.setLong(1, delivery.getId());
+            statement.setLong(2, delivery.getDriver().getId());
+            statement.setLong(3, delivery.getRestaurant().getId());
+            statement.setLong(4, delivery.getCustomer().getId());
+            statement.setTimestamp(5, Timestamp.valueOf(delivery.getDeliveryTime()));
+            statement.setTimestamp(6, Timestamp.valueOf(delivery.getEndTime()));
+            statement.setDouble(7, delivery.getDistance());
+        });
+    }
+
+    @Override
+    @Transactional
+    public <S extends Delivery> S save(S delivery) {
+        if (delivery.getId() != null) {
+            return entityManager.merge(delivery);
+        }
+        checkNoOverlaps(Collections.singletonList(delivery));
+        entityManager.persist(delivery);
+        return delivery;
+    }
+
+    @Override
+    @Transactional
+    public <S extends Delivery> List<S> saveAll(Iterable<S> deliveries) {
+        List<S> saved = new ArrayList<>();
+        List<Delivery> newDeliveries = new ArrayList<>();
+        for (S delivery : deliveries) {
+            saved.add(delivery);
+            if (delivery.getId() == null) {
+                newDeliveries.add(delivery);
+            }
+        }
+        if (!newDeliveries.isEmpty()) {
+            checkNoOverlaps(newDeliveries);
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            S delivery = saved.get(i);
+            if (delivery.getId() != null) {
+                saved.set(i, entityManager.merge(delivery));
+            } else {
+                entityManager.persist(delivery);
+            }
+        }
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public <S extends Delivery> S saveAndFlush(S delivery) {
+        S saved = save(delivery);
+        entityManager.flush();
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public <S extends Delivery> List<S> saveAllAndFlush(Iterable<S> deliveries) {
+        List<S> saved = saveAll(deliveries);
+        entityManager.flush();
+        return saved;
+    }
+
+    /**
+     * Locks the drivers of the deliveries, in id order so concurrent writers cannot deadlock, and
+     * reads their bookings overlapping the range of the deliveries. The locks are held until the
+     * transaction ends, so no other delivery of these drivers is inserted before these are.
+     */
+    private void checkNoOverlaps(List<Delivery> deliveries) {
+        Map<Long, List<DriverBooking>> bookingsByDriverId = new TreeMap<>();
+        LocalDateTime from = LocalDateTime.MAX;
+        LocalDateTime to = LocalDateTime.MIN;
+        for (Delivery delivery : deliveries) {
+            Long driverId = delivery.getDriver().getId();
+            bookingsByDriverId.computeIfAbsent(driverId, id -> new ArrayList<>())
+                              .add(new DriverBooking(driverId, delivery.getDeliveryTime(), delivery.getEndTime()));
+            from = delivery.getDeliveryTime().isBefore(from) ? delivery.getDeliveryTime() : from;
+            to = delivery.getEndTime().isAfter(to) ? delivery.getEndTime() : to;
+        }
+
+        List<Long> driverIds = new ArrayList<>(bookingsByDriverId.keySet());
+        RowCallbackHandler addBooking = resultSet -> {
+            long driverId = resultSet.getLong(1);
+            bookingsByDriverId.get(driverId).add(new DriverBooking(driverId,
+                                                                   resultSet.getTimestamp(2).toLocalDateTime(),
+                                                                   resultSet.getTimestamp(3).toLocalDateTime()));
+        };
+        for (int start = 0; start < driverIds.size(); start += BATCH_SIZE) {
+            List<Object> batch = new ArrayList<>(driverIds.subList(start, Math.min(start + BATCH_SIZE,
+                                                                                    driverIds.size())));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            jdbcTemplate.queryForList(String.format(LOCK_DRIVERS, placeholders), Long.class, batch.toArray());
+            batch.add(Timestamp.valueOf(to));
+            batch.add(Timestamp.valueOf(from));
+            jdbcTemplate.query(String.format(FIND_BOOKINGS, placeholders), addBooking, batch.toArray());
+        }
+        bookingsByDriverId.values().forEach(DeliveryRepositoryCustomImpl::checkDisjoint);
+    }
+
+    /**
+     * Sorted by start, the windows of a driver are disjoint as long as each one starts no earlier
+     * than every window before it ends.
+     */
+    private static void checkDisjoint(List<DriverBooking> bookings) {
+        bookings.sort(Comparator.comparing(DriverBooking::getDeliveryTime));
+        LocalDateTime bookedUntil = LocalDateTime.MIN;
+        for (DriverBooking booking : bookings) {
+            if (booking.getDeliveryTime().isBefore(bookedUntil)) {
+                throw new DataIntegrityViolationException(String.format(
+                        "Delivery of driver %d at %s overlaps another delivery of the driver",
+                        booking.getDriverId(), booking.getDeliveryTime()));
+            }
+            bookedUntil = booking.getEndTime().isAfter(bookedUntil) ? booking.getEndTime() : bookedUntil;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.walt.dao;
+
+import com.walt.entity.City;
+import com.walt.entity.Delivery;
+import com.walt.entity.DeliveryRollup;
+import com.walt.entity.RollupGranularity;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * Pre-aggregated delivery counts and distances per city, driver and time bucket, see the
+ * {@code delivery_rollup} table.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DeliveryRollupRepository {
+
+    private static final String UPSERT_ROLLUP =
+            "insert into delivery_rollup (granularity, city_id, bucket_start, driver_id, delivery_count, total_distance) " +
+            "values (?, ?, ?, ?, ?, ?) " +
+            "on duplicate key update delivery_count = delivery_count + values(delivery_count), " +
+            "total_distance = total_distance + values(total_distance)";
+    private static final String SELECT_CITY_ROLLUPS =
+            "select bucket_start, sum(delivery_count), sum(total_distance) from delivery_rollup " +
+            "where granularity = ? and city_id = ? and bucket_start >= ? and bucket_start < ? " +
+            "group by bucket_start order by bucket_start";
+    private static final String SELECT_DRIVER_ROLLUPS =
+            "select bucket_start, sum(delivery_count), sum(total_distance) from delivery_rollup " +
+            "where granularity = ? and driver_id = ? and bucket_start >= ? and bucket_start < ? " +
+            "group by bucket_start order by bucket_start";
+    private static final String DELETE_ROLLUPS_BEFORE =
+            "delete from delivery_rollup where granularity = ? and bucket_start < ?";
+    private static final int BATCH_SIZE = 500;
+    private static final Comparator<Bucket> BUCKET_ORDER =
+            Comparator.comparing(Bucket::getGranularity)
+                      .thenComparingLong(Bucket::getCityId)
+                      .thenComparing(Bucket::getBucketStart)
+                      .thenComparingLong(Bucket::getDriverId);
+    private static final RowMapper<DeliveryRollup> ROLLUP_MAPPER =
+            (resultSet, rowNum) -> new DeliveryRollup(resultSet.getTimestamp(1).toLocalDateTime(),
+                                                      resultSet.getLong(2),
+                                                      resultSet.getDouble(3));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds the deliveries to the buckets of every granularity. The batch is aggregated first, so
+     * every bucket is written once, and buckets are written in key order, so concurrent batches
+     * lock shared rows in the same order. Deliveries without a driver or a city are skipped.
+     */
+    @Transactional
+    public void add(List<Delivery> deliveries) {
+        Map<Bucket, DeliveryRollup> rollups = new TreeMap<>(BUCKET_ORDER);
+        for (Delivery delivery : deliveries) {
+            City city = delivery.getRestaurant() != null ? delivery.getRestaurant().getCity() : null;
+            if (delivery.getDriver() == null || city == null || city.getId() == null) {
+                continue;
+            }
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                LocalDateTime bucketStart = granularity.bucketOf(delivery.getDeliveryTime());
+                rollups.merge(new Bucket(granularity, city.getId(), bucketStart, delivery.getDriver().getId()),
+                              new DeliveryRollup(bucketStart, 1, delivery.getDistance()),
+                              (sum, rollup) -> new DeliveryRollup(bucketStart,
+                                                                  sum.getDeliveryCount() + rollup.getDeliveryCount(),
+                                                                  sum.getTotalDistance() + rollup.getTotalDistance()));
+            }
+        }
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP, new ArrayList<>(rollups.entrySet()), BATCH_SIZE, (statement, entry) -> {
+            Bucket bucket = entry.getKey();
+            statement.setString(1, bucket.getGranularity().name());
+            statement.setLong(2, bucket.getCityId());
+            statement.setTimestamp(3, Timestamp.valueOf(bucket.getBucketStart()));
+            statement.setLong(4, bucket.getDriverId());
+            statement.setLong(5, entry.getValue().getDeliveryCount());
+            statement.setDouble(6, entry.getValue().getTotalDistance());
+        });
+    }
+
+    /**
+     * Buckets of the city starting from {@code from} up to, excluding, {@code to}, summed over
+     * its drivers.
+     */
+    public List<DeliveryRollup> findByCity(RollupGranularity granularity, City city,
+                                           LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(SELECT_CITY_ROLLUPS, ROLLUP_MAPPER, granularity.name(), city.getId(),
+                                  Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public List<DeliveryRollup> findByDriver(RollupGranularity granularity, Long driverId,
+                                             LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(SELECT_DRIVER_ROLLUPS, ROLLUP_MAPPER, granularity.name(), driverId,
+                                  Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Drops the buckets of the granularity starting before the given time.
+     */
+    @Transactional
+    public int deleteBefore(RollupGranularity granularity, LocalDateTime before) {
+        return jdbcTemplate.update(DELETE_ROLLUPS_BEFORE, granularity.name(), Timestamp.valueOf(before));
+    }
+
+    @Value
+    private static class Bucket {
+        RollupGranularity granularity;
+        long cityId;
+        LocalDateTime bucketStart;
+        long driverId;
+    }
+}
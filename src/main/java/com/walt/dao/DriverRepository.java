@@ -2,14 +2,113 @@ package com.walt.dao;
 
 import com.walt.entity.City;
 import com.walt.entity.Driver;
+import com.walt.entity.DriverSummary;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static com.walt.config.CacheConfig.DRIVERS_BY_NAME;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface DriverRepository extends JpaRepository<Driver, Long> {
+    /**
+     * Not cached: the {@link com.walt.index.DriverAvailabilityIndex} keeps the drivers of a city
+     * for as long as the city is loaded, and hands them out as entities.
+     */
+    @EntityGraph(attributePaths = "city")
     List<Driver> findAllDriversByCity(City city);
 
+    @EntityGraph(attributePaths = "city")
     Optional<Driver> findByName(String name);
+
+    /**
+     * The cached lookup by name. It holds immutable summaries, as a cached entity would be shared
+     * by every caller.
+     */
+    @Cacheable(DRIVERS_BY_NAME)
+    @Query("select new com.walt.entity.DriverSummary(d.id, d.name, c.id, c.name) " +
+           "from Driver d left join d.city c where d.name = :name")
+    Optional<DriverSummary> findSummaryByName(@Param("name") String name);
+
+    @Override
+    @EntityGraph(attributePaths = "city")
+    List<Driver> findAll();
+
+    @Query("select new com.walt.entity.DriverSummary(d.id, d.name, c.id, c.name) " +
+           "from Driver d left join d.city c order by d.id")
+    List<DriverSummary> findAllSummaries();
+
+    @Query("select new com.walt.entity.DriverSummary(d.id, d.name, c.id, c.name) " +
+           "from Driver d left join d.city c where d.id > :id order by d.id")
+    List<DriverSummary> findSummariesAfter(@Param("id") Long id, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.walt.entity.DriverSummary(d.id, d.name, c.id, c.name) " +
+           "from Driver d left join d.city c order by d.id")
+    Stream<DriverSummary> streamAllSummaries();
+
+    /*
+     * Every write empties the drivers by name. Changes flushed by dirty checking never pass through
+     * here, those are evicted by the EntityChangeListener.
+     */
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    <S extends Driver> S save(S driver);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    <S extends Driver> List<S> saveAll(Iterable<S> drivers);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    <S extends Driver> S saveAndFlush(S driver);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    <S extends Driver> List<S> saveAllAndFlush(Iterable<S> drivers);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void delete(Driver driver);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void deleteById(Long id);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void deleteAllById(Iterable<? extends Long> ids);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void deleteAll(Iterable<? extends Driver> drivers);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void deleteAll();
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void deleteAllInBatch(Iterable<Driver> drivers);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void deleteAllByIdInBatch(Iterable<Long> ids);
+
+    @Override
+    @CacheEvict(cacheNames = DRIVERS_BY_NAME, allEntries = true)
+    void deleteAllInBatch();
 }
@@ -1,10 +1,18 @@
 package com.walt.dao;
 
 import com.walt.entity.Restaurant;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
+    @EntityGraph(attributePaths = "city")
     Restaurant findByName(String name);
+
+    @EntityGraph(attributePaths = "city")
+    List<Restaurant> findAllByNameIn(Collection<String> names);
 }
@@ -1,11 +1,15 @@
 package com.walt.entity;
 
+import com.walt.service.EntityChangeListener;
+
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 
 import lombok.Builder;
 import lombok.NoArgsConstructor;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @NoArgsConstructor
 public class City extends NamedEntity {
 
@@ -0,0 +1,15 @@
+package com.walt.entity;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * A page of a keyset-paginated listing. {@code nextCursor} is passed back to fetch the next page
+ * and is {@code null} on the last page.
+ */
+@Value
+public class CursorPage<T> {
+    List<T> items;
+    Long nextCursor;
+}
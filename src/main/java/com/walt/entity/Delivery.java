@@ -1,12 +1,17 @@
 package com.walt.entity;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import lombok.Builder;
 import lombok.Getter;
@@ -14,36 +19,58 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_delivery_driver_time",
+                                             columnNames = {"driver_id", "deliveryTime"}))
 @Getter
 @Setter
 @NoArgsConstructor
 public class Delivery {
 
+    /**
+     * How long a delivery keeps its driver busy when no end time is given.
+     */
+    public static final Duration DEFAULT_DURATION = Duration.ofHours(1);
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "delivery_seq")
+    @SequenceGenerator(name = "delivery_seq", sequenceName = "delivery_seq",
+                       allocationSize = NamedEntity.ID_ALLOCATION_SIZE)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Driver driver;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Restaurant restaurant;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Customer customer;
 
     private LocalDateTime deliveryTime;
+    private LocalDateTime endTime;
     private double distance;
 
-    @Builder
     public Delivery(Driver driver,
                     Restaurant restaurant,
                     Customer customer,
                     LocalDateTime deliveryTime, double distance) {
+        this(driver, restaurant, customer, deliveryTime, null, distance);
+    }
+
+    /**
+     * The driver is busy from the delivery time until the end time, which defaults to
+     * {@link #DEFAULT_DURATION} after the delivery time.
+     */
+    @Builder
+    public Delivery(Driver driver,
+                    Restaurant restaurant,
+                    Customer customer,
+                    LocalDateTime deliveryTime, LocalDateTime endTime, double distance) {
         this.driver = driver;
         this.restaurant = restaurant;
         this.customer = customer;
         this.deliveryTime = deliveryTime;
+        this.endTime = endTime != null || deliveryTime == null ? endTime : deliveryTime.plus(DEFAULT_DURATION);
         this.distance = distance;
     }
 
@@ -0,0 +1,19 @@
+package com.walt.entity;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+/**
+ * Delivery count and distance of one time bucket, pre-aggregated when the deliveries were saved.
+ */
+@Value
+public class DeliveryRollup {
+    LocalDateTime bucketStart;
+    long deliveryCount;
+    double totalDistance;
+
+    public double getAverageDistance() {
+        return deliveryCount > 0 ? totalDistance / deliveryCount : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.walt.entity;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+/**
+ * Read model of a {@link Delivery} for listings, with the driver, restaurant and customer
+ * referenced by id and name only, selected column by column.
+ */
+@Value
+public class DeliverySummary {
+    Long id;
+    NamedEntityRef driver;
+    NamedEntityRef restaurant;
+    NamedEntityRef customer;
+    LocalDateTime deliveryTime;
+    LocalDateTime endTime;
+    double distance;
+
+    public DeliverySummary(Long id, NamedEntityRef driver, NamedEntityRef restaurant, NamedEntityRef customer,
+                           LocalDateTime deliveryTime, LocalDateTime endTime, double distance) {
+        this.id = id;
+        this.driver = driver;
+        this.restaurant = restaurant;
+        this.customer = customer;
+        this.deliveryTime = deliveryTime;
+        this.endTime = endTime;
+        this.distance = distance;
+    }
+
+    /**
+     * Constructor expression of the repository queries.
+     */
+    public DeliverySummary(Long id,
+                           Long driverId, String driverName,
+                           Long restaurantId, String restaurantName,
+                           Long customerId, String customerName,
+                           LocalDateTime deliveryTime, LocalDateTime endTime, double distance) {
+        this(id,
+             NamedEntityRef.of(driverId, driverName),
+             NamedEntityRef.of(restaurantId, restaurantName),
+             NamedEntityRef.of(customerId, customerName),
+             deliveryTime, endTime, distance);
+    }
+
+    public static DeliverySummary of(Delivery delivery) {
+        return new DeliverySummary(delivery.getId(),
+                                   NamedEntityRef.of(delivery.getDriver()),
+                                   NamedEntityRef.of(delivery.getRestaurant()),
+                                   NamedEntityRef.of(delivery.getCustomer()),
+                                   delivery.getDeliveryTime(), delivery.getEndTime(), delivery.getDistance());
+    }
+}
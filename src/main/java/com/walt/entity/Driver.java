@@ -1,20 +1,34 @@
 package com.walt.entity;
 
+import com.walt.service.EntityChangeListener;
+
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
 
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Getter
 @NoArgsConstructor
 public class Driver extends NamedEntity {
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private City city;
 
+    /**
+     * Last known position of the driver, if any.
+     */
+    @Embedded
+    @Setter
+    private GeoLocation location;
+
     @Builder
     public Driver(String name, City city) {
         this.name = name;
@@ -0,0 +1,15 @@
+package com.walt.entity;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+/**
+ * Time window a driver is booked for, without the rest of the {@link Delivery} graph.
+ */
+@Value
+public class DriverBooking {
+    Long driverId;
+    LocalDateTime deliveryTime;
+    LocalDateTime endTime;
+}
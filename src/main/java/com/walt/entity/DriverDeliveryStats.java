@@ -0,0 +1,13 @@
+package com.walt.entity;
+
+import lombok.Value;
+
+/**
+ * Delivery count and total distance of a single driver, aggregated by the database.
+ */
+@Value
+public class DriverDeliveryStats {
+    Long driverId;
+    Long deliveryCount;
+    Double totalDistance;
+}
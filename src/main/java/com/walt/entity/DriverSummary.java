@@ -0,0 +1,30 @@
+package com.walt.entity;
+
+import lombok.Value;
+
+/**
+ * Read model of a {@link Driver} for listings and lookups, selected column by column.
+ */
+@Value
+public class DriverSummary {
+    Long id;
+    String name;
+    NamedEntityRef city;
+
+    public DriverSummary(Long id, String name, NamedEntityRef city) {
+        this.id = id;
+        this.name = name;
+        this.city = city;
+    }
+
+    /**
+     * Constructor expression of the repository queries.
+     */
+    public DriverSummary(Long id, String name, Long cityId, String cityName) {
+        this(id, name, NamedEntityRef.of(cityId, cityName));
+    }
+
+    public static DriverSummary of(Driver driver) {
+        return new DriverSummary(driver.getId(), driver.getName(), NamedEntityRef.of(driver.getCity()));
+    }
+}
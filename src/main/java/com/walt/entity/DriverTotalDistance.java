@@ -0,0 +1,12 @@
+package com.walt.entity;
+
+import lombok.Value;
+
+/**
+ * Immutable {@link DriverDistance} taken from precomputed totals.
+ */
+@Value
+public class DriverTotalDistance implements DriverDistance {
+    Driver driver;
+    Double totalDistance;
+}
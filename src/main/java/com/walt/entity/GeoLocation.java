@@ -0,0 +1,46 @@
+package com.walt.entity;
+
+import javax.persistence.Embeddable;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A point on earth in decimal degrees.
+ */
+@Embeddable
+@Getter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class GeoLocation {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private Double latitude;
+    private Double longitude;
+
+    public GeoLocation(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Great-circle distance in kilometers, by the haversine formula.
+     */
+    public double distanceKmTo(GeoLocation other) {
+        return haversineKm(latitude, longitude, other.latitude, other.longitude);
+    }
+
+    public static double haversineKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double sinHalfLatitudeDelta = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinHalfLongitudeDelta = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinHalfLatitudeDelta * sinHalfLatitudeDelta
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * sinHalfLongitudeDelta * sinHalfLongitudeDelta;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -4,6 +4,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -15,9 +16,34 @@ import lombok.NoArgsConstructor;
 @Getter
 public class NamedEntity {
 
+    /**
+     * Ids fetched from a sequence per round trip; must match the increment of the sequences.
+     */
+    static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "named_entity_seq")
+    @SequenceGenerator(name = "named_entity_seq", sequenceName = "named_entity_seq",
+                       allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     protected String name;
 
+    /**
+     * Persisted entities are equal by id, so instances loaded by different sessions can be used
+     * as map keys. Transient entities (no id yet) fall back to identity.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NamedEntity)) return false;
+
+        NamedEntity that = (NamedEntity) o;
+
+        return getId() != null && getId().equals(that.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getId() != null ? getId().hashCode() : System.identityHashCode(this);
+    }
 }
@@ -0,0 +1,20 @@
+package com.walt.entity;
+
+import lombok.Value;
+
+/**
+ * Id and name of a referenced city, driver, restaurant or customer, instead of its entity graph.
+ */
+@Value
+public class NamedEntityRef {
+    Long id;
+    String name;
+
+    public static NamedEntityRef of(NamedEntity entity) {
+        return entity != null ? new NamedEntityRef(entity.getId(), entity.getName()) : null;
+    }
+
+    static NamedEntityRef of(Long id, String name) {
+        return id != null ? new NamedEntityRef(id, name) : null;
+    }
+}
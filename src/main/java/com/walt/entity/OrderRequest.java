@@ -0,0 +1,33 @@
+package com.walt.entity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An order as placed by a customer. The customer is created in the restaurant's city when no
+ * customer with that name exists yet. Without a duration the delivery takes
+ * {@link Delivery#DEFAULT_DURATION}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderRequest {
+    private String customerName;
+    private String customerAddress;
+    private String restaurantName;
+    private LocalDateTime deliveryTime;
+    private Duration duration;
+
+    public OrderRequest(String customerName,
+                        String customerAddress,
+                        String restaurantName,
+                        LocalDateTime deliveryTime) {
+        this(customerName, customerAddress, restaurantName, deliveryTime, null);
+    }
+}
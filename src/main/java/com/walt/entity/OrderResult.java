@@ -0,0 +1,26 @@
+package com.walt.entity;
+
+import lombok.Value;
+
+/**
+ * Outcome of a single order of a batch: a summary of the created delivery, or the reason it was
+ * rejected.
+ */
+@Value
+public class OrderResult {
+    OrderRequest order;
+    DeliverySummary delivery;
+    String error;
+
+    public static OrderResult assigned(OrderRequest order, Delivery delivery) {
+        return new OrderResult(order, DeliverySummary.of(delivery), null);
+    }
+
+    public static OrderResult rejected(OrderRequest order, String error) {
+        return new OrderResult(order, null, error);
+    }
+
+    public boolean isAssigned() {
+        return delivery != null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.walt.entity;
+
+import lombok.Value;
+
+/**
+ * Progress of an order submitted for asynchronous assignment. The delivery is set once the order
+ * is {@link State#ASSIGNED assigned}, the error once it is {@link State#REJECTED rejected}.
+ */
+@Value
+public class OrderStatus {
+    long orderId;
+    State state;
+    DeliverySummary delivery;
+    String error;
+
+    public enum State {
+        QUEUED, ASSIGNED, REJECTED
+    }
+
+    public static OrderStatus queued(long orderId) {
+        return new OrderStatus(orderId, State.QUEUED, null, null);
+    }
+
+    public static OrderStatus of(long orderId, OrderResult result) {
+        return result.isAssigned()
+                ? new OrderStatus(orderId, State.ASSIGNED, result.getDelivery(), null)
+                : rejected(orderId, result.getError());
+    }
+
+    public static OrderStatus rejected(long orderId, String error) {
+        return new OrderStatus(orderId, State.REJECTED, null, error);
+    }
+}
@@ -1,21 +1,28 @@
 package com.walt.entity;
 
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
 
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 @Entity
 @NoArgsConstructor
 @Getter
 public class Restaurant extends NamedEntity {
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private City city;
     private String address;
 
+    @Embedded
+    @Setter
+    private GeoLocation location;
+
     @Builder
     public Restaurant(String name, City city, String address) {
         this.name = name;
@@ -0,0 +1,29 @@
+package com.walt.entity;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Width of a delivery rollup bucket. Weeks start on Monday.
+ */
+public enum RollupGranularity {
+    HOUR,
+    DAY,
+    WEEK;
+
+    /**
+     * Start of the bucket the time falls in.
+     */
+    public LocalDateTime bucketOf(LocalDateTime time) {
+        switch (this) {
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            case DAY:
+                return time.truncatedTo(ChronoUnit.DAYS);
+            default:
+                return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.walt.entity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Drivers of a city free for a whole delivery starting at the slot start, least busy first.
+ */
+@Value
+public class SlotAvailability {
+    LocalDateTime slotStart;
+    List<NamedEntityRef> freeDrivers;
+
+    public int getFreeDriverCount() {
+        return freeDrivers.size();
+    }
+}
@@ -0,0 +1,10 @@
+package com.walt.exceptions;
+
+public class NoSuchDriverException extends RuntimeException {
+
+    private static final String DEFAULT_MESSAGE = "There is no such driver";
+
+    public NoSuchDriverException() {
+        super(DEFAULT_MESSAGE);
+    }
+}
@@ -0,0 +1,10 @@
+package com.walt.exceptions;
+
+public class NoSuchRestaurantException extends RuntimeException {
+
+    private static final String DEFAULT_MESSAGE = "There is no such restaurant";
+
+    public NoSuchRestaurantException() {
+        super(DEFAULT_MESSAGE);
+    }
+}
@@ -0,0 +1,10 @@
+package com.walt.exceptions;
+
+public class OrderQueueFullException extends RuntimeException {
+
+    private static final String DEFAULT_MESSAGE = "Too many pending orders, try again later";
+
+    public OrderQueueFullException() {
+        super(DEFAULT_MESSAGE);
+    }
+}
@@ -0,0 +1,492 @@
+package com.walt.index;
+
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverBooking;
+import com.walt.entity.DriverDeliveryStats;
+import com.walt.entity.DriverDistance;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.NamedEntityRef;
+import com.walt.entity.SlotAvailability;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Bookings of all drivers of a single city.
+ * <p>
+ * Every driver gets an ordinal in the order they were loaded, and for every
+ * {@link DeliverySlots slot} the city keeps a bitset of the ordinals of the drivers with a
+ * booking in it. The bitsets are a coarse filter: a driver whose bits are clear over all slots of
+ * a window is free for it without further checks, and only drivers with a booking nearby are
+ * checked exactly against their {@link DriverBookings booked windows}.
+ * <p>
+ * Drivers are also kept sorted by delivery count, ties going to the lowest ordinal, i.e. the
+ * repository order. The least busy available driver is the first one of that order that is free,
+ * so a lookup usually stops at the first few drivers, and a driver whose count changes is
+ * re-inserted at its new position in O(log n).
+ * <p>
+ * Every driver is also ranked by total distance on the city's {@link Leaderboard} and on the
+ * global one shared by all loaded cities, both updated on every booking.
+ * <p>
+ * Drivers with a known position are also placed on a {@link DriverGrid}, so the nearest available
+ * driver is found by looking at the cells around the target only.
+ * <p>
+ * The free drivers of a range of slots are found in a single pass over the slot bitsets.
+ * <p>
+ * Every city has its own lock: lookups share the read lock, while a reservation picks and books
+ * a driver under the write lock, so two orders of the same city can never take the same slot
+ * and orders of different cities never wait for each other.
+ */
+class CityBookings {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final Comparator<DriverBookings> LEAST_BUSY_FIRST =
+            Comparator.comparingLong(DriverBookings::getDeliveryCount)
+                      .thenComparingInt(DriverBookings::getOrdinal);
+
+    private final List<DriverBookings> bookingsByOrdinal = new ArrayList<>();
+    private final NavigableSet<DriverBookings> bookingsByLoad = new TreeSet<>(LEAST_BUSY_FIRST);
+    private final Map<Driver, DriverBookings> bookingsByDriver = new HashMap<>();
+    private final Map<Long, DriverBookings> bookingsByDriverId = new HashMap<>();
+    private final LongObjectHashMap<long[]> busyDriversBySlot = new LongObjectHashMap<>();
+    private final DriverGrid driverGrid = new DriverGrid();
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final Leaderboard globalLeaderboard;
+    private boolean detached;
+    private long deliveryCount;
+    private double totalDistance;
+
+    CityBookings() {
+        this(new Leaderboard());
+    }
+
+    CityBookings(Leaderboard globalLeaderboard) {
+        this.globalLeaderboard = globalLeaderboard;
+    }
+
+    void addDriver(Driver driver) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            bookingsOf(driver);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies aggregated stats of a loaded driver, rows of unknown drivers are ignored.
+     */
+    void addStats(DriverDeliveryStats stats) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            DriverBookings driverBookings = bookingsByDriverId.get(stats.getDriverId());
+            if (driverBookings != null) {
+                addStats(driverBookings, stats.getDeliveryCount(), stats.getTotalDistance());
+                deliveryCount += stats.getDeliveryCount();
+                totalDistance += stats.getTotalDistance();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void addBooking(DriverBooking booking) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            DriverBookings driverBookings = bookingsByDriverId.get(booking.getDriverId());
+            if (driverBookings != null) {
+                long start = DeliverySlots.epochSecondOf(booking.getDeliveryTime());
+                long end = DeliverySlots.epochSecondOf(booking.getEndTime());
+                driverBookings.book(start, end);
+                setBusy(start, end, driverBookings.getOrdinal());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies the stats and booked windows of a loaded driver restored from the
+     * {@link DeliveryEventLog}, histories of unknown drivers are ignored.
+     */
+    void addHistory(long driverId, DriverHistory history) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            DriverBookings driverBookings = bookingsByDriverId.get(driverId);
+            if (driverBookings != null) {
+                addStats(driverBookings, history.getDeliveryCount(), history.getTotalDistance());
+                deliveryCount += history.getDeliveryCount();
+                totalDistance += history.getTotalDistance();
+                for (int window = 0; window < history.getWindowCount(); window++) {
+                    driverBookings.book(history.startAt(window), history.endAt(window));
+                    setBusy(history.startAt(window), history.endAt(window), driverBookings.getOrdinal());
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Picks the least busy driver available for the whole window and books it for them in a
+     * single step.
+     */
+    Optional<Reservation> reserveLeastBusyAvailable(LocalDateTime deliveryTime, LocalDateTime endTime,
+                                                    double distance) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            long start = DeliverySlots.epochSecondOf(deliveryTime);
+            long end = DeliverySlots.epochSecondOf(endTime);
+            DriverBookings leastBusy = findLeastBusyAvailable(start, end);
+            if (leastBusy == null) {
+                return Optional.empty();
+            }
+            book(leastBusy, start, end, distance);
+            return Optional.of(new Reservation(this, leastBusy.getDriver(), start, end, distance));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reserves drivers for a batch of deliveries under a single lock acquisition. Deliveries are
+     * placed in order, each on the least busy driver left, and the chosen driver is set on the
+     * delivery; deliveries without an available driver are left without one.
+     */
+    List<Reservation> reserveAll(List<Delivery> deliveries) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            List<Reservation> reservations = new ArrayList<>();
+            for (Delivery delivery : deliveries) {
+                long start = DeliverySlots.epochSecondOf(delivery.getDeliveryTime());
+                long end = DeliverySlots.epochSecondOf(delivery.getEndTime());
+                DriverBookings leastBusy = findLeastBusyAvailable(start, end);
+                if (leastBusy != null) {
+                    book(leastBusy, start, end, delivery.getDistance());
+                    delivery.setDriver(leastBusy.getDriver());
+                    reservations.add(new Reservation(this, leastBusy.getDriver(), start, end, delivery.getDistance()));
+                }
+            }
+            return reservations;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Undoes a reservation made by this instance. A reservation released twice, or whose window is
+     * not booked any more, changes nothing.
+     */
+    void release(Reservation reservation) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            DriverBookings driverBookings = bookingsByDriver.get(reservation.getDriver());
+            if (driverBookings != null && driverBookings.unbook(reservation.getStart(), reservation.getEnd())) {
+                clearBusy(driverBookings, reservation.getStart(), reservation.getEnd());
+                addStats(driverBookings, -1, -reservation.getDistance());
+                deliveryCount--;
+                totalDistance -= reservation.getDistance();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    Optional<Driver> findLeastBusyAvailable(LocalDateTime deliveryTime, LocalDateTime endTime) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            DriverBookings leastBusy = findLeastBusyAvailable(DeliverySlots.epochSecondOf(deliveryTime),
+                                                              DeliverySlots.epochSecondOf(endTime));
+            return leastBusy != null ? Optional.of(leastBusy.getDriver()) : Optional.empty();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the drivers free for a delivery of the given duration starting at every slot from
+     * {@code from} until {@code to}, in one pass under a single read lock. The busy bitsets of the
+     * hours a delivery would cover are merged once per slot, so only the drivers with a booking in
+     * them are checked against their booked windows.
+     */
+    List<SlotAvailability> findAvailable(LocalDateTime from, LocalDateTime to, Duration duration) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<SlotAvailability> slots = new ArrayList<>();
+            long[] busy = new long[(bookingsByOrdinal.size() + 63) >>> 6];
+            for (LocalDateTime slotStart = from;
+                 slotStart.isBefore(to);
+                 slotStart = slotStart.plusSeconds(DeliverySlots.SLOT_SECONDS)) {
+                long start = DeliverySlots.epochSecondOf(slotStart);
+                long end = start + duration.getSeconds();
+                Arrays.fill(busy, 0L);
+                for (long slot = DeliverySlots.slotOf(start); slot <= DeliverySlots.lastSlotOf(start, end); slot++) {
+                    long[] busyDrivers = busyDriversBySlot.get(slot);
+                    for (int word = 0; busyDrivers != null && word < Math.min(busyDrivers.length, busy.length); word++) {
+                        busy[word] |= busyDrivers[word];
+                    }
+                }
+                List<NamedEntityRef> freeDrivers = new ArrayList<>();
+                for (DriverBookings candidate : bookingsByLoad) {
+                    long driverBit = 1L << candidate.getOrdinal();
+                    if ((busy[candidate.getOrdinal() >>> 6] & driverBit) == 0 || candidate.isAvailable(start, end)) {
+                        freeDrivers.add(NamedEntityRef.of(candidate.getDriver()));
+                    }
+                }
+                slots.add(new SlotAvailability(slotStart, freeDrivers));
+            }
+            return slots;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the available driver nearest to the location, drivers without a known position are
+     * never picked.
+     */
+    Optional<Driver> findNearestAvailable(GeoLocation location, LocalDateTime deliveryTime, LocalDateTime endTime) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long start = DeliverySlots.epochSecondOf(deliveryTime);
+            long end = DeliverySlots.epochSecondOf(endTime);
+            DriverBookings nearest = driverGrid.findNearest(location, candidate -> isAvailable(candidate, start, end));
+            return nearest != null ? Optional.of(nearest.getDriver()) : Optional.empty();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Page of the city's drivers ranked by total distance, longest first. Read under the read lock,
+     * like the {@link #ranking}.
+     */
+    List<DriverDistance> leaderboard(int offset, int limit) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return leaderboard.page(offset, limit);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * All drivers of the city ranked by total distance, longest first. Read under the read lock, so
+     * no driver is missed while a booking moves it to its new rank.
+     */
+    List<DriverDistance> ranking() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return leaderboard.all();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Takes the city's drivers off the global leaderboard for good, once the city is evicted from
+     * the index; later bookings through this instance no longer reach it.
+     */
+    void detach() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            detached = true;
+            bookingsByOrdinal.forEach(driverBookings -> globalLeaderboard.remove(driverBookings.getRankEntry()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    List<DriverDistance> driverDistances() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return bookingsByOrdinal.stream()
+                                    .map(DriverBookings::toDriverDistance)
+                                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    boolean hasDriver(Long driverId) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return bookingsByDriverId.containsKey(driverId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int getDriverCount() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return bookingsByOrdinal.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    long getDeliveryCount() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return deliveryCount;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    double getTotalDistance() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return totalDistance;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private DriverBookings bookingsOf(Driver driver) {
+        DriverBookings driverBookings = bookingsByDriver.get(driver);
+        if (driverBookings == null) {
+            driverBookings = new DriverBookings(driver, bookingsByOrdinal.size());
+            bookingsByOrdinal.add(driverBookings);
+            bookingsByLoad.add(driverBookings);
+            rank(driverBookings);
+            bookingsByDriver.put(driver, driverBookings);
+            bookingsByDriverId.put(driver.getId(), driverBookings);
+            if (driver.getLocation() != null) {
+                driverGrid.add(driverBookings, driver.getLocation());
+            }
+        }
+        return driverBookings;
+    }
+
+    private void book(DriverBookings driverBookings, long start, long end, double distance) {
+        driverBookings.book(start, end);
+        setBusy(start, end, driverBookings.getOrdinal());
+        addStats(driverBookings, 1, distance);
+        deliveryCount++;
+        totalDistance += distance;
+    }
+
+    /**
+     * Keeps the load order and the leaderboards intact: the driver leaves the load order before
+     * its stats change and re-enters at its new position, and its leaderboard entry is replaced by
+     * one with the new stats. The new entry goes in before the old one is taken out, so the global
+     * leaderboard, which is read without this lock, always has the driver.
+     */
+    private void addStats(DriverBookings driverBookings, long deliveryCount, double totalDistance) {
+        Leaderboard.Entry previousEntry = driverBookings.getRankEntry();
+        bookingsByLoad.remove(driverBookings);
+        driverBookings.addStats(deliveryCount, totalDistance);
+        bookingsByLoad.add(driverBookings);
+        rank(driverBookings);
+        leaderboard.remove(previousEntry);
+        globalLeaderboard.remove(previousEntry);
+    }
+
+    private void rank(DriverBookings driverBookings) {
+        Leaderboard.Entry rankEntry = Leaderboard.Entry.of(driverBookings.getDriver(),
+                                                           driverBookings.getTotalDistance());
+        driverBookings.setRankEntry(rankEntry);
+        leaderboard.add(rankEntry);
+        if (!detached) {
+            globalLeaderboard.add(rankEntry);
+        }
+    }
+
+    private DriverBookings findLeastBusyAvailable(long start, long end) {
+        for (DriverBookings candidate : bookingsByLoad) {
+            if (isAvailable(candidate, start, end)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Answers from the slot bitsets when the driver has no booking in any slot of the window, and
+     * from the driver's booked windows otherwise.
+     */
+    private boolean isAvailable(DriverBookings driverBookings, long start, long end) {
+        int word = driverBookings.getOrdinal() >>> 6;
+        long driverBit = 1L << driverBookings.getOrdinal();
+        for (long slot = DeliverySlots.slotOf(start); slot <= DeliverySlots.lastSlotOf(start, end); slot++) {
+            if ((wordAt(busyDriversBySlot.get(slot), word) & driverBit) != 0) {
+                return driverBookings.isAvailable(start, end);
+            }
+        }
+        return true;
+    }
+
+    private void setBusy(long start, long end, int ordinal) {
+        for (long slot = DeliverySlots.slotOf(start); slot <= DeliverySlots.lastSlotOf(start, end); slot++) {
+            setBusy(slot, ordinal);
+        }
+    }
+
+    private void setBusy(long slot, int ordinal) {
+        long[] busyDrivers = busyDriversBySlot.get(slot);
+        int word = ordinal >>> 6;
+        if (busyDrivers == null || busyDrivers.length <= word) {
+            long[] grown = new long[Math.max(word + 1, (bookingsByOrdinal.size() + 63) >>> 6)];
+            if (busyDrivers != null) {
+                System.arraycopy(busyDrivers, 0, grown, 0, busyDrivers.length);
+            }
+            busyDrivers = grown;
+            busyDriversBySlot.put(slot, busyDrivers);
+        }
+        busyDrivers[word] |= 1L << ordinal;
+    }
+
+    /**
+     * Clears the driver's bit in the slots of a released window, except in slots the driver still
+     * has another booking in.
+     */
+    private void clearBusy(DriverBookings driverBookings, long start, long end) {
+        int word = driverBookings.getOrdinal() >>> 6;
+        for (long slot = DeliverySlots.slotOf(start); slot <= DeliverySlots.lastSlotOf(start, end); slot++) {
+            long[] busyDrivers = busyDriversBySlot.get(slot);
+            long slotStart = DeliverySlots.startOfSlot(slot);
+            if (busyDrivers != null && word < busyDrivers.length
+                    && driverBookings.isAvailable(slotStart, slotStart + DeliverySlots.SLOT_SECONDS)) {
+                busyDrivers[word] &= ~(1L << driverBookings.getOrdinal());
+            }
+        }
+    }
+
+    private static long wordAt(long[] bits, int word) {
+        return bits != null && word < bits.length ? bits[word] : 0L;
+    }
+}
@@ -0,0 +1,324 @@
+package com.walt.index;
+
+import com.walt.config.EventLogProperties;
+import com.walt.entity.Delivery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Append-only log of assigned deliveries with periodic snapshots, from which the
+ * {@link DriverAvailabilityIndex} is rebuilt on startup instead of reading every delivery back.
+ * <p>
+ * The log is a sequence of memory-mapped segment files of fixed-size records: delivery time, end
+ * time, distance, delivery id and, written last, the driver id, so a record whose driver id is
+ * still zero was never completed and marks the end of the log. Records survive a crash of the
+ * process, as they are in the page cache once written, but are not forced to disk one by one.
+ * <p>
+ * A snapshot folds the previous snapshot and every closed segment into the delivery count,
+ * distance and windows of each driver, then deletes those segments, so startup reads one compact
+ * file plus the segments written since. Windows which ended before the snapshot are dropped, they
+ * no longer keep a driver busy. The snapshot names the first segment it does not cover, which
+ * keeps a crash between writing it and deleting the segments harmless, and records the highest
+ * delivery id it covers, against which the log is checked on startup.
+ */
+@Component
+public class DeliveryEventLog {
+
+    static final int RECORD_SIZE = 40;
+
+    private static final Logger log = LoggerFactory.getLogger(DeliveryEventLog.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int SNAPSHOT_MAGIC = 0x57414C54;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_VERSION_WITHOUT_MAX_ID = 1;
+    private static final long UNKNOWN_MAX_DELIVERY_ID = -1;
+    private static final int DRIVER_ID_OFFSET = 32;
+
+    private final EventLogProperties properties;
+    private final Object snapshotLock = new Object();
+    private MappedByteBuffer segmentBuffer;
+    private long segment;
+    private Snapshot recovered;
+
+    public DeliveryEventLog(EventLogProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Reads the snapshot and the segments written since, and opens the last segment for appending
+     * after its last complete record.
+     */
+    @PostConstruct
+    void open() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Files.createDirectories(properties.getDirectory());
+        recovered = readSnapshot();
+        segment = recovered.getFirstSegment();
+        int position = 0;
+        for (long existing : segmentsFrom(recovered.getFirstSegment())) {
+            segment = existing;
+            position = replay(existing, recovered);
+        }
+        openSegment(segment, position);
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (segmentBuffer != null) {
+            segmentBuffer.force();
+            segmentBuffer = null;
+        }
+    }
+
+    /**
+     * Hands out the driver histories read by {@link #open()} once, so they can be dropped as soon
+     * as the index is built from them.
+     */
+    synchronized Snapshot takeRecovered() {
+        Snapshot snapshot = recovered != null ? recovered : new Snapshot(0, 0, new HashMap<>());
+        recovered = null;
+        return snapshot;
+    }
+
+    /**
+     * Appends a record per saved delivery. A record which cannot be written is only logged: on the
+     * next startup the log then disagrees with the database, which is read instead.
+     */
+    public synchronized void append(List<Delivery> deliveries) {
+        if (!isEnabled() || segmentBuffer == null) {
+            return;
+        }
+        try {
+            for (Delivery delivery : deliveries) {
+                if (segmentBuffer.remaining() < RECORD_SIZE) {
+                    openSegment(segment + 1, 0);
+                }
+                int position = segmentBuffer.position();
+                segmentBuffer.putLong(DeliverySlots.epochSecondOf(delivery.getDeliveryTime()))
+                             .putLong(DeliverySlots.epochSecondOf(delivery.getEndTime()))
+                             .putDouble(delivery.getDistance())
+                             .putLong(delivery.getId() != null ? delivery.getId() : 0L);
+                segmentBuffer.putLong(position + DRIVER_ID_OFFSET, delivery.getDriver().getId());
+                segmentBuffer.position(position + RECORD_SIZE);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not append to the delivery event log", e);
+        }
+    }
+
+    /**
+     * Folds the closed segments into a new snapshot and deletes them. The segment is only rolled
+     * when it holds records, and without closed segments there is nothing to fold.
+     */
+    @Scheduled(initialDelayString = "${walt.event-log.snapshot-interval:PT10M}",
+               fixedDelayString = "${walt.event-log.snapshot-interval:PT10M}")
+    public void snapshot() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            try {
+                long firstOpenSegment = rollSegment();
+                Snapshot snapshot = readSnapshot();
+                if (snapshot.getFirstSegment() >= firstOpenSegment) {
+                    return;
+                }
+                for (long closed : segmentsFrom(snapshot.getFirstSegment())) {
+                    if (closed < firstOpenSegment) {
+                        replay(closed, snapshot);
+                    }
+                }
+                writeSnapshot(snapshot.getHistories(), snapshot.getMaxDeliveryId(), firstOpenSegment);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the snapshot and all segments with the given histories, read from the database
+     * after the log was found to disagree with it, and returns them. The segment is rolled first,
+     * so deliveries logged while the histories are read are kept.
+     *
+     * @param maxDeliveryId the highest delivery id among the histories
+     */
+    Map<Long, DriverHistory> reset(Supplier<Map<Long, DriverHistory>> histories, long maxDeliveryId) {
+        synchronized (snapshotLock) {
+            try {
+                long firstOpenSegment = rollSegment();
+                Map<Long, DriverHistory> snapshot = histories.get();
+                writeSnapshot(snapshot, maxDeliveryId, firstOpenSegment);
+                return snapshot;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Moves appends to a new segment, unless the current one is still empty, and returns the
+     * first segment which is not closed.
+     */
+    private synchronized long rollSegment() throws IOException {
+        if (segmentBuffer == null || segmentBuffer.position() > 0) {
+            openSegment(segment + 1, 0);
+        }
+        return segment;
+    }
+
+    private void openSegment(long segment, int position) throws IOException {
+        if (segmentBuffer != null) {
+            segmentBuffer.force();
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segmentBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                        (long) properties.getSegmentRecords() * RECORD_SIZE);
+        }
+        segmentBuffer.position(position);
+        this.segment = segment;
+    }
+
+    /**
+     * Adds the complete records of the segment to the snapshot and returns the position after the
+     * last of them.
+     */
+    private int replay(long segment, Snapshot snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            for (; position + RECORD_SIZE <= buffer.limit(); position += RECORD_SIZE) {
+                long driverId = buffer.getLong(position + DRIVER_ID_OFFSET);
+                if (driverId == 0) {
+                    break;
+                }
+                snapshot.addDelivery(driverId, buffer.getLong(position + 24), buffer.getLong(position),
+                                     buffer.getLong(position + 8), buffer.getDouble(position + 16));
+            }
+            return position;
+        }
+    }
+
+    private Snapshot readSnapshot() throws IOException {
+        Path snapshotPath = properties.getDirectory().resolve(SNAPSHOT_FILE);
+        Map<Long, DriverHistory> histories = new HashMap<>();
+        if (!Files.exists(snapshotPath)) {
+            return new Snapshot(0, 0, histories);
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            int version = input.readInt() == SNAPSHOT_MAGIC ? input.readInt() : 0;
+            if (version != SNAPSHOT_VERSION && version != SNAPSHOT_VERSION_WITHOUT_MAX_ID) {
+                throw new IOException("Unknown snapshot format in " + snapshotPath);
+            }
+            long firstSegment = input.readLong();
+            // a snapshot of the first version never matches the database, which is read instead
+            long maxDeliveryId = version == SNAPSHOT_VERSION ? input.readLong() : UNKNOWN_MAX_DELIVERY_ID;
+            int drivers = input.readInt();
+            for (int i = 0; i < drivers; i++) {
+                histories.put(input.readLong(), DriverHistory.readFrom(input));
+            }
+            return new Snapshot(firstSegment, maxDeliveryId, histories);
+        }
+    }
+
+    /**
+     * Drops the windows which ended already, writes the snapshot next to the current one and
+     * moves it in place, then deletes the segments it covers.
+     */
+    private void writeSnapshot(Map<Long, DriverHistory> histories, long maxDeliveryId, long firstSegment)
+            throws IOException {
+        long now = DeliverySlots.epochSecondOf(LocalDateTime.now());
+        histories.values().forEach(history -> history.dropWindowsEndingBefore(now));
+        Path snapshotPath = properties.getDirectory().resolve(SNAPSHOT_FILE);
+        Path writtenPath = properties.getDirectory().resolve(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(writtenPath)))) {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeLong(firstSegment);
+            output.writeLong(maxDeliveryId);
+            output.writeInt(histories.size());
+            for (Map.Entry<Long, DriverHistory> entry : histories.entrySet()) {
+                output.writeLong(entry.getKey());
+                entry.getValue().writeTo(output);
+            }
+        }
+        Files.move(writtenPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long covered : segmentsFrom(0)) {
+            if (covered < firstSegment) {
+                Files.delete(segmentPath(covered));
+            }
+        }
+    }
+
+    private List<Long> segmentsFrom(long firstSegment) throws IOException {
+        try (Stream<Path> files = Files.list(properties.getDirectory())) {
+            return files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                                                   name.length() - SEGMENT_SUFFIX.length())))
+                        .filter(segment -> segment >= firstSegment)
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return properties.getDirectory().resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Driver histories of a snapshot and the segments replayed onto it, with the highest delivery
+     * id among them.
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Snapshot {
+
+        private final long firstSegment;
+        private long maxDeliveryId;
+        private final Map<Long, DriverHistory> histories;
+
+        private void addDelivery(long driverId, long deliveryId, long start, long end, double distance) {
+            histories.computeIfAbsent(driverId, id -> new DriverHistory()).addDelivery(start, end, distance);
+            maxDeliveryId = Math.max(maxDeliveryId, deliveryId);
+        }
+    }
+}
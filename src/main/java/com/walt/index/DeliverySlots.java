@@ -0,0 +1,33 @@
+package com.walt.index;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Maps delivery times to epoch seconds and to hour long slot indices. A delivery window
+ * {@code [start, end)} covers every slot from the one of its start to the one of its last second;
+ * the conversions are plain arithmetic and do not allocate.
+ */
+final class DeliverySlots {
+
+    static final long SLOT_SECONDS = 3600;
+
+    private DeliverySlots() {
+    }
+
+    static long epochSecondOf(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static long slotOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, SLOT_SECONDS);
+    }
+
+    static long lastSlotOf(long start, long end) {
+        return Math.max(slotOf(start), slotOf(end - 1));
+    }
+
+    static long startOfSlot(long slot) {
+        return slot * SLOT_SECONDS;
+    }
+}
@@ -0,0 +1,393 @@
+package com.walt.index;
+
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.entity.City;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverBooking;
+import com.walt.entity.DriverDeliveryStats;
+import com.walt.entity.DriverDistance;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.SlotAvailability;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToDoubleFunction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * In-memory view of driver bookings and running distance totals, grouped by city.
+ * <p>
+ * A city is read from the repositories the first time it is queried and is kept up to date
+ * afterwards through {@link #reserve reservations}, so driver matching and the rank report do
+ * not hit the database. A city whose drivers or the city itself are written is
+ * {@link #evict evicted} and read again on its next lookup.
+ * <p>
+ * Drivers are ranked by total distance per city and across all loaded cities as deliveries are
+ * booked, so a {@link #leaderboard page of the ranking} is read without sorting.
+ * <p>
+ * With the {@link DeliveryEventLog} enabled, every city is loaded on startup from the log's
+ * snapshot and tail instead of the deliveries table, unless the log disagrees with the database.
+ * <p>
+ * The driver and delivery counts of every loaded city are published as gauges, tagged with the
+ * city name.
+ */
+@Component
+@RequiredArgsConstructor
+public class DriverAvailabilityIndex implements SmartInitializingSingleton {
+
+    public static final String CITY_DRIVERS = "walt.city.drivers";
+    public static final String CITY_DELIVERIES = "walt.city.deliveries";
+
+    private static final Logger log = LoggerFactory.getLogger(DriverAvailabilityIndex.class);
+
+    private final DriverRepository driverRepository;
+    private final DeliveryRepository deliveryRepository;
+    private final MeterRegistry meterRegistry;
+    private final DeliveryEventLog eventLog;
+    private final ForkJoinPool rankReportPool;
+
+    private final ConcurrentMap<City, CityBookings> bookingsByCity = new ConcurrentHashMap<>();
+    private final Leaderboard globalLeaderboard = new Leaderboard();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile boolean allCitiesLoaded;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (eventLog.isEnabled()) {
+            restoreAllCities();
+        }
+    }
+
+    /**
+     * Finds the least busy driver free from the delivery time until the end time.
+     */
+    public Optional<Driver> findLeastBusyAvailable(City city, LocalDateTime deliveryTime, LocalDateTime endTime) {
+        if (city == null) {
+            return Optional.empty();
+        }
+        return bookingsOf(city).findLeastBusyAvailable(deliveryTime, endTime);
+    }
+
+    /**
+     * Finds the driver nearest to the location among those free from the delivery time until the
+     * end time, by the drivers' last known positions.
+     */
+    public Optional<Driver> findNearestAvailable(City city, GeoLocation location,
+                                                 LocalDateTime deliveryTime, LocalDateTime endTime) {
+        if (city == null) {
+            return Optional.empty();
+        }
+        return bookingsOf(city).findNearestAvailable(location, deliveryTime, endTime);
+    }
+
+    /**
+     * Drivers free for a delivery of the given duration starting at every hour from {@code from}
+     * until {@code to}.
+     */
+    public List<SlotAvailability> findAvailable(City city, LocalDateTime from, LocalDateTime to, Duration duration) {
+        if (city == null) {
+            return Collections.emptyList();
+        }
+        return bookingsOf(city).findAvailable(from, to, duration);
+    }
+
+    public List<DriverDistance> driverDistances(City city) {
+        if (city == null) {
+            return Collections.emptyList();
+        }
+        return bookingsOf(city).driverDistances();
+    }
+
+    /**
+     * All drivers ranked by total distance, longest first, ties going to the lowest driver id. The
+     * cities are ranked in parallel and their rankings merged, see {@link RankReport}.
+     */
+    public List<DriverDistance> rankReport() {
+        loadAllCities();
+        return RankReport.of(rankReportPool, new ArrayList<>(bookingsByCity.values()));
+    }
+
+    /**
+     * Page of all drivers ranked by total distance, longest first.
+     */
+    public List<DriverDistance> leaderboard(int offset, int limit) {
+        loadAllCities();
+        return globalLeaderboard.page(offset, limit);
+    }
+
+    /**
+     * Page of the city's drivers ranked by total distance, longest first.
+     */
+    public List<DriverDistance> leaderboard(City city, int offset, int limit) {
+        if (city == null) {
+            return Collections.emptyList();
+        }
+        return bookingsOf(city).leaderboard(offset, limit);
+    }
+
+    public double getTotalDistance(City city) {
+        CityBookings cityBookings = city != null ? bookingsByCity.get(city) : null;
+        return cityBookings != null ? cityBookings.getTotalDistance() : 0;
+    }
+
+    /**
+     * Books the least busy driver free from the delivery time until the end time. The window
+     * stays taken until it is {@link #release released}, so concurrent orders of the same city
+     * get different drivers.
+     */
+    public Optional<Reservation> reserve(City city, LocalDateTime deliveryTime, LocalDateTime endTime,
+                                         double distance) {
+        if (city == null) {
+            return Optional.empty();
+        }
+        return bookingsOf(city).reserveLeastBusyAvailable(deliveryTime, endTime, distance);
+    }
+
+    /**
+     * Reserves drivers for a batch of deliveries of the given city, see
+     * {@link CityBookings#reserveAll(List)}.
+     */
+    public List<Reservation> reserveAll(City city, List<Delivery> deliveries) {
+        return city != null ? bookingsOf(city).reserveAll(deliveries) : Collections.emptyList();
+    }
+
+    /**
+     * Undoes a {@link #reserve reservation} whose delivery could not be saved, in the loaded city
+     * which made it, even if that city has been evicted since.
+     */
+    public void release(Reservation reservation) {
+        reservation.getCityBookings().release(reservation);
+    }
+
+    public void evict(City city) {
+        allCitiesLoaded = false;
+        evictions.incrementAndGet();
+        CityBookings evicted = bookingsByCity.remove(city);
+        if (evicted != null) {
+            evicted.detach();
+        }
+    }
+
+    /**
+     * Evicts the cities of a driver written to the database: its city and any loaded city it is
+     * still part of, which differs once the driver moved to another city or was deleted.
+     */
+    public void evictCitiesOf(Driver driver) {
+        if (driver.getCity() != null) {
+            evict(driver.getCity());
+        }
+        bookingsByCity.forEach((city, cityBookings) -> {
+            if (cityBookings.hasDriver(driver.getId())) {
+                evict(city);
+            }
+        });
+    }
+
+    public void evictAll() {
+        allCitiesLoaded = false;
+        bookingsByCity.keySet().forEach(this::evict);
+    }
+
+    /**
+     * The loaded city, or the city read from the repositories. The city is read outside the map, so
+     * no lookup of another city waits on those statements; of two lookups loading the same city at
+     * once, the first to install it wins and the other one drops its copy.
+     */
+    private CityBookings bookingsOf(City city) {
+        CityBookings cityBookings = bookingsByCity.get(city);
+        if (cityBookings != null) {
+            return cityBookings;
+        }
+        long evictionsBeforeLoad = evictions.get();
+        CityBookings loaded = load(city);
+        install(Collections.singletonMap(city, loaded), evictionsBeforeLoad);
+        CityBookings installed = bookingsByCity.get(city);
+        return installed != null ? installed : loaded;
+    }
+
+    private CityBookings load(City city) {
+        registerGauges(city);
+        CityBookings cityBookings = new CityBookings(globalLeaderboard);
+        driverRepository.findAllDriversByCity(city).forEach(cityBookings::addDriver);
+        deliveryRepository.findDeliveryStatsByCity(city).forEach(cityBookings::addStats);
+        deliveryRepository.findBookingsByCity(city).forEach(cityBookings::addBooking);
+        return cityBookings;
+    }
+
+    /**
+     * Loads every city which is not in the index yet with three statements in total: drivers,
+     * per driver stats and booked slots.
+     */
+    private void loadAllCities() {
+        if (allCitiesLoaded) {
+            return;
+        }
+        long evictionsBeforeLoad = evictions.get();
+        Map<City, CityBookings> loadedCities = new HashMap<>();
+        Map<Long, CityBookings> cityBookingsByDriverId = new HashMap<>();
+        for (Driver driver : driverRepository.findAll()) {
+            City city = driver.getCity();
+            if (city == null || bookingsByCity.containsKey(city)) {
+                continue;
+            }
+            CityBookings cityBookings = loadedCities.computeIfAbsent(city, this::newCityBookings);
+            cityBookings.addDriver(driver);
+            cityBookingsByDriverId.put(driver.getId(), cityBookings);
+        }
+
+        if (!loadedCities.isEmpty()) {
+            for (DriverDeliveryStats stats : deliveryRepository.findDeliveryStats()) {
+                CityBookings cityBookings = cityBookingsByDriverId.get(stats.getDriverId());
+                if (cityBookings != null) {
+                    cityBookings.addStats(stats);
+                }
+            }
+            for (DriverBooking booking : deliveryRepository.findAllBookings()) {
+                CityBookings cityBookings = cityBookingsByDriverId.get(booking.getDriverId());
+                if (cityBookings != null) {
+                    cityBookings.addBooking(booking);
+                }
+            }
+            if (!install(loadedCities, evictionsBeforeLoad)) {
+                return;
+            }
+        }
+        allCitiesLoaded = true;
+    }
+
+    /**
+     * Loads every city from the histories recovered by the event log. The log has to hold the
+     * newest delivery of the database and as many deliveries of every driver, otherwise it missed
+     * deliveries, or the database is not the one the log was written for, and both the index and
+     * the log are rebuilt from the database.
+     */
+    private void restoreAllCities() {
+        long evictionsBeforeLoad = evictions.get();
+        DeliveryEventLog.Snapshot recovered = eventLog.takeRecovered();
+        Map<Long, DriverHistory> histories = recovered.getHistories();
+        long maxDeliveryId = deliveryRepository.findMaxId();
+        if (recovered.getMaxDeliveryId() != maxDeliveryId || !hasSavedDeliveryCounts(histories)) {
+            log.warn("Delivery event log up to delivery {} disagrees with the database up to delivery {}, " +
+                     "rebuilding it from the database", recovered.getMaxDeliveryId(), maxDeliveryId);
+            histories = eventLog.reset(this::readHistories, maxDeliveryId);
+        }
+
+        Map<City, CityBookings> loadedCities = new HashMap<>();
+        for (Driver driver : driverRepository.findAll()) {
+            City city = driver.getCity();
+            if (city == null) {
+                continue;
+            }
+            CityBookings cityBookings = loadedCities.computeIfAbsent(city, this::newCityBookings);
+            cityBookings.addDriver(driver);
+            DriverHistory history = histories.get(driver.getId());
+            if (history != null) {
+                cityBookings.addHistory(driver.getId(), history);
+            }
+        }
+        allCitiesLoaded = install(loadedCities, evictionsBeforeLoad);
+    }
+
+    private boolean hasSavedDeliveryCounts(Map<Long, DriverHistory> histories) {
+        List<DriverDeliveryStats> savedStats = deliveryRepository.findDeliveryStats();
+        long loggedDrivers = histories.values().stream().filter(history -> history.getDeliveryCount() > 0).count();
+        if (savedStats.size() != loggedDrivers) {
+            return false;
+        }
+        for (DriverDeliveryStats stats : savedStats) {
+            DriverHistory history = histories.get(stats.getDriverId());
+            if (history == null || history.getDeliveryCount() != stats.getDeliveryCount()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<Long, DriverHistory> readHistories() {
+        Map<Long, DriverHistory> histories = new HashMap<>();
+        for (DriverDeliveryStats stats : deliveryRepository.findDeliveryStats()) {
+            histories.computeIfAbsent(stats.getDriverId(), driverId -> new DriverHistory())
+                     .addStats(stats.getDeliveryCount(), stats.getTotalDistance());
+        }
+        for (DriverBooking booking : deliveryRepository.findAllBookings()) {
+            histories.computeIfAbsent(booking.getDriverId(), driverId -> new DriverHistory())
+                     .addWindow(DeliverySlots.epochSecondOf(booking.getDeliveryTime()),
+                                DeliverySlots.epochSecondOf(booking.getEndTime()));
+        }
+        return histories;
+    }
+
+    /**
+     * Adds cities read from the repositories to the index, unless they are loaded already. A city
+     * evicted while these were read may have been read before its change, and the eviction found
+     * nothing to remove yet, so when any city was evicted in the meantime they are all taken out
+     * again and read anew on their next lookup.
+     *
+     * @return whether the cities stay in the index
+     */
+    private boolean install(Map<City, CityBookings> loadedCities, long evictionsBeforeLoad) {
+        loadedCities.forEach((city, cityBookings) -> {
+            if (bookingsByCity.putIfAbsent(city, cityBookings) != null) {
+                // loaded concurrently by a lookup of that city, keep that one on the leaderboard
+                cityBookings.detach();
+            }
+        });
+        if (evictions.get() == evictionsBeforeLoad) {
+            return true;
+        }
+        loadedCities.forEach((city, cityBookings) -> {
+            if (bookingsByCity.remove(city, cityBookings)) {
+                cityBookings.detach();
+            }
+        });
+        return false;
+    }
+
+    private CityBookings newCityBookings(City city) {
+        registerGauges(city);
+        return new CityBookings(globalLeaderboard);
+    }
+
+    /**
+     * Registers the gauges of a city. They read the city's current bookings on every scrape, so
+     * registering them again after the city is evicted and reloaded is a no-op.
+     */
+    private void registerGauges(City city) {
+        String cityName = String.valueOf(city.getName());
+        gauge(CITY_DRIVERS, "Drivers of the city", cityName, city, CityBookings::getDriverCount);
+        gauge(CITY_DELIVERIES, "Deliveries of the city", cityName, city, CityBookings::getDeliveryCount);
+    }
+
+    private void gauge(String name, String description, String cityName, City city,
+                       ToDoubleFunction<CityBookings> value) {
+        Gauge.builder(name, this, index -> {
+                 CityBookings cityBookings = index.bookingsByCity.get(city);
+                 return cityBookings != null ? value.applyAsDouble(cityBookings) : Double.NaN;
+             })
+             .description(description)
+             .tag("city", cityName)
+             .strongReference(true)
+             .register(meterRegistry);
+    }
+}
@@ -0,0 +1,69 @@
+package com.walt.index;
+
+import com.walt.entity.Driver;
+import com.walt.entity.DriverDistance;
+import com.walt.entity.DriverTotalDistance;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Booked time windows, delivery count and total delivery distance of a single driver.
+ * <p>
+ * The windows of a driver never overlap, so they are kept sorted by start, in epoch seconds,
+ * and a new window overlaps a booking only if the last booking starting before the new window
+ * ends is still running when it starts: a single {@link NavigableMap#lowerEntry} lookup.
+ */
+@Getter
+class DriverBookings {
+
+    private final Driver driver;
+    private final int ordinal;
+    @Getter(AccessLevel.NONE)
+    private final NavigableMap<Long, Long> endsByStart = new TreeMap<>();
+    private long deliveryCount;
+    private double totalDistance;
+    private Leaderboard.Entry rankEntry;
+
+    DriverBookings(Driver driver, int ordinal) {
+        this.driver = driver;
+        this.ordinal = ordinal;
+    }
+
+    boolean isAvailable(long start, long end) {
+        Map.Entry<Long, Long> lastBookingBefore = endsByStart.lowerEntry(end);
+        return lastBookingBefore == null || lastBookingBefore.getValue() <= start;
+    }
+
+    void book(long start, long end) {
+        endsByStart.merge(start, end, Math::max);
+    }
+
+    /**
+     * Removes the window if it is booked, and tells whether it was.
+     */
+    boolean unbook(long start, long end) {
+        return endsByStart.remove(start, end);
+    }
+
+    void addStats(long deliveryCount, double totalDistance) {
+        this.deliveryCount += deliveryCount;
+        this.totalDistance += totalDistance;
+    }
+
+    /**
+     * Remembers the entry the driver is currently ranked with, so exactly that entry is removed
+     * when its stats change.
+     */
+    void setRankEntry(Leaderboard.Entry rankEntry) {
+        this.rankEntry = rankEntry;
+    }
+
+    DriverDistance toDriverDistance() {
+        return new DriverTotalDistance(driver, totalDistance);
+    }
+}
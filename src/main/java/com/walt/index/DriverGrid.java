@@ -0,0 +1,107 @@
+package com.walt.index;
+
+import com.walt.entity.GeoLocation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Drivers of a city bucketed by their last known position into a grid of
+ * {@value #CELL_DEGREES} degree cells, about a kilometer wide.
+ * <p>
+ * The nearest driver is searched ring by ring around the cell of the target: the cells of ring
+ * {@code r} are at least {@code r - 1} whole cells away, so once that lower bound passes the
+ * nearest driver found so far the outer rings cannot hold a closer one and the search stops.
+ * Rings beyond the bounding box of the occupied cells are never visited. Not thread safe, the
+ * owning {@link CityBookings} guards it with its lock.
+ */
+final class DriverGrid {
+
+    static final double CELL_DEGREES = 0.01;
+    private static final double KM_PER_DEGREE = GeoLocation.EARTH_RADIUS_KM * Math.PI / 180;
+
+    private final LongObjectHashMap<List<DriverBookings>> driversByCell = new LongObjectHashMap<>();
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minColumn = Integer.MAX_VALUE;
+    private int maxColumn = Integer.MIN_VALUE;
+
+    void add(DriverBookings driverBookings, GeoLocation location) {
+        int row = rowOf(location.getLatitude());
+        int column = columnOf(location.getLongitude());
+        List<DriverBookings> drivers = driversByCell.get(cellKey(row, column));
+        if (drivers == null) {
+            drivers = new ArrayList<>(1);
+            driversByCell.put(cellKey(row, column), drivers);
+        }
+        drivers.add(driverBookings);
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minColumn = Math.min(minColumn, column);
+        maxColumn = Math.max(maxColumn, column);
+    }
+
+    /**
+     * Finds the driver nearest to the location among those accepted by the filter, or
+     * {@code null} when there is none.
+     */
+    DriverBookings findNearest(GeoLocation location, Predicate<DriverBookings> filter) {
+        if (minRow > maxRow) {
+            return null;
+        }
+        int row = rowOf(location.getLatitude());
+        int column = columnOf(location.getLongitude());
+        int lastRing = Math.max(Math.max(row - minRow, maxRow - row), Math.max(column - minColumn, maxColumn - column));
+
+        DriverBookings nearest = null;
+        double nearestKm = Double.POSITIVE_INFINITY;
+        for (int ring = 0; ring <= lastRing && minKmToRing(location, ring) < nearestKm; ring++) {
+            for (int cellRow = Math.max(row - ring, minRow); cellRow <= Math.min(row + ring, maxRow); cellRow++) {
+                boolean edgeRow = cellRow == row - ring || cellRow == row + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int cellColumn = column - ring; cellColumn <= column + ring; cellColumn += step) {
+                    if (cellColumn < minColumn || cellColumn > maxColumn) {
+                        continue;
+                    }
+                    List<DriverBookings> drivers = driversByCell.get(cellKey(cellRow, cellColumn));
+                    if (drivers == null) {
+                        continue;
+                    }
+                    for (DriverBookings candidate : drivers) {
+                        double km = location.distanceKmTo(candidate.getDriver().getLocation());
+                        if (km < nearestKm && filter.test(candidate)) {
+                            nearest = candidate;
+                            nearestKm = km;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Lower bound of the distance from the location to any point of the ring: {@code ring - 1}
+     * whole cells, measured across meridians at the latitude where they are narrowest.
+     */
+    private static double minKmToRing(GeoLocation location, int ring) {
+        if (ring <= 1) {
+            return 0;
+        }
+        double farthestLatitude = Math.min(90, Math.abs(location.getLatitude()) + (ring + 1) * CELL_DEGREES);
+        return (ring - 1) * CELL_DEGREES * KM_PER_DEGREE * Math.cos(Math.toRadians(farthestLatitude));
+    }
+
+    private static int rowOf(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static int columnOf(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
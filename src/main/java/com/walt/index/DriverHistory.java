@@ -0,0 +1,87 @@
+package com.walt.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Delivery count, total distance and booked windows of a single driver, as kept in the
+ * {@link DeliveryEventLog} snapshots. Windows are stored as flat pairs of epoch seconds, so tens of
+ * millions of them neither box nor allocate per window.
+ */
+@Getter
+final class DriverHistory {
+
+    private static final int INITIAL_WINDOWS = 8;
+
+    private long deliveryCount;
+    private double totalDistance;
+    private int windowCount;
+    @Getter(AccessLevel.NONE)
+    private long[] windows = new long[2 * INITIAL_WINDOWS];
+
+    void addDelivery(long start, long end, double distance) {
+        addStats(1, distance);
+        addWindow(start, end);
+    }
+
+    void addStats(long deliveryCount, double totalDistance) {
+        this.deliveryCount += deliveryCount;
+        this.totalDistance += totalDistance;
+    }
+
+    void addWindow(long start, long end) {
+        if (2 * windowCount == windows.length) {
+            windows = Arrays.copyOf(windows, 2 * windows.length);
+        }
+        windows[2 * windowCount] = start;
+        windows[2 * windowCount + 1] = end;
+        windowCount++;
+    }
+
+    /**
+     * Removes the windows which ended before the given time, keeping the others in order.
+     */
+    void dropWindowsEndingBefore(long time) {
+        int kept = 0;
+        for (int window = 0; window < windowCount; window++) {
+            if (endAt(window) >= time) {
+                windows[2 * kept] = startAt(window);
+                windows[2 * kept + 1] = endAt(window);
+                kept++;
+            }
+        }
+        windowCount = kept;
+    }
+
+    long startAt(int window) {
+        return windows[2 * window];
+    }
+
+    long endAt(int window) {
+        return windows[2 * window + 1];
+    }
+
+    void writeTo(DataOutput output) throws IOException {
+        output.writeLong(deliveryCount);
+        output.writeDouble(totalDistance);
+        output.writeInt(windowCount);
+        for (int i = 0; i < 2 * windowCount; i++) {
+            output.writeLong(windows[i]);
+        }
+    }
+
+    static DriverHistory readFrom(DataInput input) throws IOException {
+        DriverHistory history = new DriverHistory();
+        history.addStats(input.readLong(), input.readDouble());
+        int windowCount = input.readInt();
+        for (int i = 0; i < windowCount; i++) {
+            history.addWindow(input.readLong(), input.readLong());
+        }
+        return history;
+    }
+}
@@ -0,0 +1,105 @@
+package com.walt.index;
+
+import com.walt.entity.Driver;
+import com.walt.entity.DriverDistance;
+import com.walt.entity.DriverTotalDistance;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Drivers ranked by total delivery distance, longest first, ties going to the lowest driver id.
+ * <p>
+ * The ranking is a skip list kept sorted as deliveries are booked, so a page of it costs
+ * O(offset + limit) instead of sorting every driver. It holds immutable {@link Entry entries}: a
+ * driver whose stats change is ranked again with a new entry and then has its old one
+ * {@link #remove removed}, which the owning {@link CityBookings} does under its write lock.
+ * <p>
+ * Reads need no lock, but are only weakly consistent: a page counts and lists every driver once,
+ * skipping the old entry of a driver being ranked again, yet a driver moving up past the point
+ * the page has read to is left out of it. The city leaderboards are read under the city's read
+ * lock, so only pages of the global one can miss a driver being booked at that moment.
+ * <p>
+ * Every entry is unique, even among entries of the same driver and distance, so two
+ * {@link CityBookings} instances of one city, e.g. an evicted one and its reload, each only ever
+ * remove the entries they added themselves.
+ */
+final class Leaderboard {
+
+    private static final AtomicLong ENTRY_SEQUENCE = new AtomicLong();
+    private static final Comparator<Entry> LONGEST_DISTANCE_FIRST =
+            Comparator.comparingDouble(Entry::getTotalDistance)
+                      .reversed()
+                      .thenComparingLong(Entry::getDriverId)
+                      .thenComparingLong(Entry::getSequence);
+
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(LONGEST_DISTANCE_FIRST);
+
+    void add(Entry entry) {
+        ranking.add(entry);
+    }
+
+    void remove(Entry entry) {
+        ranking.remove(entry);
+    }
+
+    void clear() {
+        ranking.clear();
+    }
+
+    /**
+     * The whole ranking, in order.
+     */
+    List<DriverDistance> all() {
+        List<DriverDistance> all = new ArrayList<>();
+        ranking.forEach(entry -> all.add(entry.toDriverDistance()));
+        return all;
+    }
+
+    List<DriverDistance> page(int offset, int limit) {
+        List<DriverDistance> page = new ArrayList<>(Math.min(limit, ranking.size()));
+        Set<Long> rankedDriverIds = new HashSet<>();
+        Iterator<Entry> iterator = ranking.iterator();
+        while (rankedDriverIds.size() < offset && iterator.hasNext()) {
+            rankedDriverIds.add(iterator.next().getDriverId());
+        }
+        while (page.size() < limit && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (rankedDriverIds.add(entry.getDriverId())) {
+                page.add(entry.toDriverDistance());
+            }
+        }
+        return page;
+    }
+
+    /**
+     * A driver's total distance at the time it was ranked.
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Entry {
+
+        private final Driver driver;
+        private final long driverId;
+        private final double totalDistance;
+        private final long sequence;
+
+        static Entry of(Driver driver, double totalDistance) {
+            return new Entry(driver, driver.getId(), totalDistance, ENTRY_SEQUENCE.incrementAndGet());
+        }
+
+        DriverDistance toDriverDistance() {
+            return new DriverTotalDistance(driver, totalDistance);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.walt.index;
+
+/**
+ * Open addressing hash map with primitive {@code long} keys, so lookups neither box the key nor
+ * allocate. Not thread safe, {@code null} values are not supported.
+ */
+final class LongObjectHashMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int index = indexFor(key, mask); values[index] != null; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return (V) values[index];
+            }
+        }
+        return null;
+    }
+
+    void put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        int mask = keys.length - 1;
+        int index = indexFor(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = indexFor(oldKeys[i], mask);
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int indexFor(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
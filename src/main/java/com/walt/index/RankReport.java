@@ -0,0 +1,99 @@
+package com.walt.index;
+
+import com.walt.entity.DriverDistance;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The rank report of several cities, computed on a fork-join pool.
+ * <p>
+ * The cities are split in halves until a task holds at most {@link #CITIES_PER_TASK} of them, and
+ * every task takes the rankings of its cities, each sorted already and read under its city's lock
+ * only. The per-city rankings are then merged k-way through a heap of their heads, which costs
+ * O(n log k) for n drivers in k cities instead of sorting all drivers again.
+ */
+final class RankReport {
+
+    static final Comparator<DriverDistance> LONGEST_DISTANCE_FIRST =
+            Comparator.comparingDouble(DriverDistance::getTotalDistance)
+                      .reversed()
+                      .thenComparingLong(driverDistance -> driverDistance.getDriver().getId());
+
+    private static final int CITIES_PER_TASK = 8;
+
+    private RankReport() {
+    }
+
+    static List<DriverDistance> of(ForkJoinPool pool, List<CityBookings> cities) {
+        return merge(pool.invoke(new CityRankingTask(cities)));
+    }
+
+    /**
+     * Merges rankings sorted by {@link #LONGEST_DISTANCE_FIRST} into one.
+     */
+    static List<DriverDistance> merge(List<List<DriverDistance>> rankings) {
+        List<DriverDistance> merged = new ArrayList<>(rankings.stream().mapToInt(List::size).sum());
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, rankings.size()),
+                                                          Comparator.comparing(Cursor::head, LONGEST_DISTANCE_FIRST));
+        for (List<DriverDistance> ranking : rankings) {
+            if (!ranking.isEmpty()) {
+                heads.add(new Cursor(ranking));
+            }
+        }
+        while (!heads.isEmpty()) {
+            Cursor cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static final class CityRankingTask extends RecursiveTask<List<List<DriverDistance>>> {
+
+        private final List<CityBookings> cities;
+
+        private CityRankingTask(List<CityBookings> cities) {
+            this.cities = cities;
+        }
+
+        @Override
+        protected List<List<DriverDistance>> compute() {
+            if (cities.size() <= CITIES_PER_TASK) {
+                List<List<DriverDistance>> rankings = new ArrayList<>(cities.size());
+                cities.forEach(cityBookings -> rankings.add(cityBookings.ranking()));
+                return rankings;
+            }
+            int middle = cities.size() / 2;
+            CityRankingTask firstHalf = new CityRankingTask(cities.subList(0, middle));
+            firstHalf.fork();
+            List<List<DriverDistance>> rankings = new CityRankingTask(cities.subList(middle, cities.size())).compute();
+            rankings.addAll(firstHalf.join());
+            return rankings;
+        }
+    }
+
+    private static final class Cursor {
+
+        private final List<DriverDistance> ranking;
+        private int position;
+
+        private Cursor(List<DriverDistance> ranking) {
+            this.ranking = ranking;
+        }
+
+        private DriverDistance head() {
+            return ranking.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < ranking.size();
+        }
+    }
+}
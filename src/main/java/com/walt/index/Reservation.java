@@ -0,0 +1,27 @@
+package com.walt.index;
+
+import com.walt.entity.Driver;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A driver booked for a delivery which is not saved yet, bound to the loaded city which booked it.
+ * {@link DriverAvailabilityIndex#release Releasing} it undoes the booking there only, so a city
+ * reloaded from the database in the meantime, which never saw the booking, is left as it is.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class Reservation {
+
+    @Getter(AccessLevel.PACKAGE)
+    private final CityBookings cityBookings;
+    private final Driver driver;
+    @Getter(AccessLevel.PACKAGE)
+    private final long start;
+    @Getter(AccessLevel.PACKAGE)
+    private final long end;
+    @Getter(AccessLevel.PACKAGE)
+    private final double distance;
+}
@@ -0,0 +1,39 @@
+package com.walt.rest.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.function.Supplier;
+
+import lombok.Value;
+
+/**
+ * Serialized response bodies by request, each kept with the data version it was read at, so
+ * repeated reads of unchanged data are neither recomputed nor serialized again. A body read at an
+ * older version never replaces one of a newer version.
+ */
+final class VersionedBodyCache {
+
+    private final Cache<String, VersionedBody> bodies;
+
+    VersionedBodyCache(long maximumSize) {
+        bodies = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    byte[] get(String key, long version, Supplier<byte[]> body) {
+        VersionedBody cached = bodies.getIfPresent(key);
+        if (cached != null && cached.getVersion() == version) {
+            return cached.getBody();
+        }
+        VersionedBody read = new VersionedBody(version, body.get());
+        bodies.asMap().merge(key, read, (current, candidate) ->
+                current.getVersion() > candidate.getVersion() ? current : candidate);
+        return read.getBody();
+    }
+
+    @Value
+    private static class VersionedBody {
+        long version;
+        byte[] body;
+    }
+}
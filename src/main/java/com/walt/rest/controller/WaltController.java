@@ -1,19 +1,58 @@
 package com.walt.rest.controller;
 
-import com.walt.entity.Delivery;
+import com.walt.entity.City;
+import com.walt.entity.CursorPage;
+import com.walt.entity.DeliveryRollup;
+import com.walt.entity.DeliverySummary;
 import com.walt.entity.Driver;
+import com.walt.entity.DriverDistance;
+import com.walt.entity.DriverSummary;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
+import com.walt.entity.OrderStatus;
+import com.walt.entity.RollupGranularity;
+import com.walt.entity.SlotAvailability;
+import com.walt.exceptions.NoSuchCityException;
+import com.walt.exceptions.NoSuchDriverException;
+import com.walt.exceptions.OrderQueueFullException;
+import com.walt.service.DataVersion;
+import com.walt.service.DeliveryRollupService;
+import com.walt.service.OrderIntakeService;
 import com.walt.service.WaltService;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import lombok.RequiredArgsConstructor;
 
@@ -22,26 +61,314 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class WaltController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String DEFAULT_LEADERBOARD_SIZE = "10";
+    private static final String ORDER_QUEUE_RETRY_AFTER_SECONDS = "1";
+    private static final Duration MAX_AVAILABILITY_RANGE = Duration.ofDays(7);
+    private static final long MAX_CACHED_BODIES = 1000;
+
     private final WaltService waltService;
+    private final OrderIntakeService orderIntakeService;
+    private final DeliveryRollupService rollupService;
+    private final ObjectMapper objectMapper;
+    private final DataVersion dataVersion;
+    private final VersionedBodyCache bodyCache = new VersionedBodyCache(MAX_CACHED_BODIES);
 
     @GetMapping("/drivers")
-    public ResponseEntity<List<Driver>> getAllDrivers() {
-        return ResponseEntity.of(Optional.of(waltService.getAllDrivers()));
+    public ResponseEntity<byte[]> getAllDrivers(WebRequest request) {
+        return versioned(request, "drivers", waltService::getAllDrivers);
+    }
+
+    @GetMapping(value = "/drivers", params = "limit")
+    public ResponseEntity<CursorPage<DriverSummary>> getDrivers(@RequestParam(required = false) Long after,
+                                                                @RequestParam int limit) {
+        return ResponseEntity.ok(waltService.getDrivers(after, toPageSize(limit)));
+    }
+
+    @GetMapping(value = "/drivers", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDrivers() {
+        return toNdjsonResponse(waltService::streamDrivers);
     }
 
     @GetMapping("/deliveries")
-    public ResponseEntity<List<Delivery>> getAllDeliveries() {
+    public ResponseEntity<List<DeliverySummary>> getAllDeliveries() {
         return ResponseEntity.of(Optional.of(waltService.getAllDeliveries()));
     }
 
+    @GetMapping(value = "/deliveries", params = "limit")
+    public ResponseEntity<CursorPage<DeliverySummary>> getDeliveries(@RequestParam(required = false) Long after,
+                                                                     @RequestParam int limit) {
+        return ResponseEntity.ok(waltService.getDeliveries(after, toPageSize(limit)));
+    }
+
+    @GetMapping(value = "/deliveries", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDeliveries() {
+        return toNdjsonResponse(waltService::streamDeliveries);
+    }
+
     @GetMapping("/drivers/{name}")
-    public ResponseEntity<Driver> getDriverByName(@PathVariable String name) {
+    public ResponseEntity<DriverSummary> getDriverByName(@PathVariable String name) {
         return ResponseEntity.of(waltService.getDriverByName(name));
     }
 
     @GetMapping("/drivers/locate/{cityName}/{deliveryTime}")
-    public ResponseEntity<Driver> locateDriver(@PathVariable String cityName,
-                                               @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime deliveryTime) {
-        return ResponseEntity.of(waltService.locateDriverForDeliveryAt(cityName, deliveryTime));
+    public ResponseEntity<DriverSummary> locateDriver(@PathVariable String cityName,
+                                                      @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime deliveryTime) {
+        return ResponseEntity.of(waltService.locateDriverForDeliveryAt(cityName, deliveryTime)
+                                            .map(DriverSummary::of));
+    }
+
+    @GetMapping("/drivers/nearest/{cityName}/{deliveryTime}")
+    public ResponseEntity<DriverSummary> locateNearestDriver(@PathVariable String cityName,
+                                                             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime deliveryTime,
+                                                             @RequestParam double latitude,
+                                                             @RequestParam double longitude) {
+        return ResponseEntity.of(waltService.locateNearestDriverForDeliveryAt(cityName,
+                                                                              new GeoLocation(latitude, longitude),
+                                                                              deliveryTime)
+                                            .map(DriverSummary::of));
+    }
+
+    /**
+     * Free drivers of the city for a delivery starting at every hour of a time range of at most
+     * {@link #MAX_AVAILABILITY_RANGE}, longer ranges are cut.
+     */
+    @GetMapping("/drivers/available/{cityName}")
+    public ResponseEntity<List<SlotAvailability>> getAvailableDrivers(@PathVariable String cityName,
+                                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime rangeEnd = from.plus(MAX_AVAILABILITY_RANGE);
+        return ResponseEntity.ok(waltService.getAvailableDrivers(cityName, from, to.isAfter(rangeEnd) ? rangeEnd : to));
+    }
+
+    @GetMapping("/leaderboard")
+    public ResponseEntity<byte[]> getLeaderboard(@RequestParam(defaultValue = "0") int offset,
+                                                 @RequestParam(defaultValue = DEFAULT_LEADERBOARD_SIZE) int limit,
+                                                 WebRequest request) {
+        int pageOffset = Math.max(0, offset);
+        int pageSize = toPageSize(limit);
+        return versioned(request, "leaderboard:" + pageOffset + ":" + pageSize,
+                         () -> waltService.getDriverLeaderboard(pageOffset, pageSize));
+    }
+
+    @GetMapping("/leaderboard/{cityName}")
+    public ResponseEntity<byte[]> getLeaderboardByCity(@PathVariable String cityName,
+                                                       @RequestParam(defaultValue = "0") int offset,
+                                                       @RequestParam(defaultValue = DEFAULT_LEADERBOARD_SIZE) int limit,
+                                                       WebRequest request) {
+        int pageOffset = Math.max(0, offset);
+        int pageSize = toPageSize(limit);
+        City city = waltService.getCity(cityName);
+        return versioned(request, "leaderboard:" + pageOffset + ":" + pageSize + ":" + cityName,
+                         () -> waltService.getDriverLeaderboardByCity(city, pageOffset, pageSize));
+    }
+
+    /**
+     * Drivers ranked by total distance, longest first, from {@code offset} on. Without a limit the
+     * whole ranking is written, read as one {@link WaltService#getDriverRankReport report}. With
+     * one, it is a page of at most {@value #MAX_PAGE_SIZE} drivers read from the sorted ranking,
+     * with a {@code Link} to the next page as long as there are more drivers.
+     */
+    @GetMapping("/report")
+    public ResponseEntity<StreamingResponseBody> getRankReport(@RequestParam(defaultValue = "0") int offset,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               WebRequest request) {
+        int reportOffset = Math.max(0, offset);
+        if (limit == null) {
+            return versionedReport(request, reportOffset, Integer.MAX_VALUE,
+                                   () -> fromOffset(waltService.getDriverRankReport(), reportOffset));
+        }
+        int pageSize = toPageSize(limit);
+        return versionedReport(request, reportOffset, pageSize,
+                               () -> waltService.getDriverLeaderboard(reportOffset, pageSize + 1));
+    }
+
+    @GetMapping("/report/{cityName}")
+    public ResponseEntity<StreamingResponseBody> getRankReportByCity(@PathVariable String cityName,
+                                                                     @RequestParam(defaultValue = "0") int offset,
+                                                                     @RequestParam(required = false) Integer limit,
+                                                                     WebRequest request) {
+        int reportOffset = Math.max(0, offset);
+        City city = waltService.getCity(cityName);
+        if (limit == null) {
+            return versionedReport(request, reportOffset, Integer.MAX_VALUE,
+                                   () -> fromOffset(waltService.getDriverRankReportByCity(city), reportOffset));
+        }
+        int pageSize = toPageSize(limit);
+        return versionedReport(request, reportOffset, pageSize,
+                               () -> waltService.getDriverLeaderboardByCity(city, reportOffset, pageSize + 1));
+    }
+
+    /**
+     * Delivery count and distance of the city per hour, day or week over a time range.
+     */
+    @GetMapping("/analytics/cities/{cityName}")
+    public ResponseEntity<List<DeliveryRollup>> getCityRollups(@PathVariable String cityName,
+                                                               @RequestParam(defaultValue = "HOUR") RollupGranularity granularity,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(rollupService.getCityRollups(cityName, granularity, from, to));
+    }
+
+    @GetMapping("/analytics/drivers/{driverName}")
+    public ResponseEntity<List<DeliveryRollup>> getDriverRollups(@PathVariable String driverName,
+                                                                 @RequestParam(defaultValue = "HOUR") RollupGranularity granularity,
+                                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(rollupService.getDriverRollups(driverName, granularity, from, to));
+    }
+
+    @PostMapping("/orders/batch")
+    public ResponseEntity<List<OrderResult>> createOrders(@RequestBody List<OrderRequest> orders) {
+        return ResponseEntity.ok(waltService.createOrdersAndAssignDrivers(orders));
+    }
+
+    /**
+     * Queues the order for asynchronous assignment and answers right away; the outcome is polled
+     * from the returned location.
+     */
+    @PostMapping("/orders")
+    public ResponseEntity<OrderStatus> submitOrder(@RequestBody OrderRequest order) {
+        long orderId = orderIntakeService.submit(order);
+        return ResponseEntity.accepted()
+                             .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                                                                  .path("/{orderId}")
+                                                                  .buildAndExpand(orderId)
+                                                                  .toUri())
+                             .body(OrderStatus.queued(orderId));
+    }
+
+    @GetMapping("/orders/{orderId}")
+    public ResponseEntity<OrderStatus> getOrderStatus(@PathVariable long orderId) {
+        return ResponseEntity.of(orderIntakeService.getStatus(orderId));
+    }
+
+    @ExceptionHandler(OrderQueueFullException.class)
+    public ResponseEntity<String> onOrderQueueFull(OrderQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                             .header(HttpHeaders.RETRY_AFTER, ORDER_QUEUE_RETRY_AFTER_SECONDS)
+                             .body(e.getMessage());
+    }
+
+    @ExceptionHandler({NoSuchCityException.class, NoSuchDriverException.class})
+    public ResponseEntity<Void> onNoSuchEntity() {
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Answers 304 Not Modified without reading anything when the client already holds the
+     * current data version, and otherwise the body read at the current version, serialized once
+     * per version and request key. Clients are asked to revalidate on every use.
+     * <p>
+     * The version says nothing about whether the requested city or driver exists, so callers
+     * resolve those first; a 304 for a missing one would keep a client on a body it never had.
+     */
+    private ResponseEntity<byte[]> versioned(WebRequest request, String key, Supplier<?> body) {
+        return versionedBytes(request, key, () -> {
+            try {
+                return objectMapper.writeValueAsBytes(body.get());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private ResponseEntity<byte[]> versionedBytes(WebRequest request, String key, Supplier<byte[]> body) {
+        long version = dataVersion.current();
+        String eTag = eTagOf(version);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        byte[] serialized = bodyCache.get(key, version, body);
+        return ResponseEntity.ok()
+                             .eTag(eTag)
+                             .cacheControl(CacheControl.noCache())
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .body(serialized);
+    }
+
+    /**
+     * Like {@link #versionedBytes}, but the report is written straight to the response instead of
+     * being serialized up front and cached. {@code rows} reads the report from {@code offset} on
+     * and one row past {@code pageSize} if there is one, which tells that a next page exists.
+     */
+    private ResponseEntity<StreamingResponseBody> versionedReport(WebRequest request, int offset, int pageSize,
+                                                                  Supplier<List<DriverDistance>> rows) {
+        String eTag = eTagOf(dataVersion.current());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        List<DriverDistance> report = rows.get();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                                                            .eTag(eTag)
+                                                            .cacheControl(CacheControl.noCache())
+                                                            .contentType(MediaType.APPLICATION_JSON);
+        if (report.size() > pageSize) {
+            report = report.subList(0, pageSize);
+            String nextPage = ServletUriComponentsBuilder.fromCurrentRequest()
+                                                         .replaceQueryParam("offset", offset + pageSize)
+                                                         .replaceQueryParam("limit", pageSize)
+                                                         .toUriString();
+            response.header(HttpHeaders.LINK, "<" + nextPage + ">; rel=\"next\"");
+        }
+        List<DriverDistance> page = report;
+        return response.body(outputStream -> writeJsonReport(page, offset, outputStream));
+    }
+
+    private String eTagOf(long version) {
+        return String.format("\"%x-%x\"", dataVersion.getEpoch(), version);
+    }
+
+    private static int toPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private static <T> List<T> fromOffset(List<T> rows, int offset) {
+        return rows.subList(Math.min(offset, rows.size()), rows.size());
+    }
+
+    /**
+     * Writes the report as a JSON array one row at a time with a streaming generator. Only the
+     * shown fields are copied out of the rows instead of serializing the driver entity.
+     */
+    private void writeJsonReport(List<DriverDistance> rows, int offset, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            int rank = offset;
+            for (DriverDistance row : rows) {
+                Driver driver = row.getDriver();
+                generator.writeStartObject();
+                generator.writeNumberField("rank", ++rank);
+                generator.writeNumberField("driverId", driver.getId());
+                generator.writeStringField("driverName", driver.getName());
+                generator.writeStringField("cityName", driver.getCity() != null ? driver.getCity().getName() : null);
+                generator.writeNumberField("totalDistance", row.getTotalDistance());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes every streamed row as one JSON line as soon as it is read, so the response never
+     * holds more than a single row.
+     */
+    private <T> ResponseEntity<StreamingResponseBody> toNdjsonResponse(Consumer<Consumer<T>> rows) {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = (OutputStream outputStream) -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                rows.accept(row -> {
+                    try {
+                        writer.writeValue(generator, row);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                             .contentType(MediaType.APPLICATION_NDJSON)
+                             .body(body);
     }
 }
@@ -0,0 +1,37 @@
+package com.walt.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the data behind the driver listings and rankings, increased after every saved
+ * delivery, released reservation and driver or city change. Responses built from the data are
+ * tagged with the version they were read at, so a client holding the current version is told
+ * nothing changed without reading anything.
+ * <p>
+ * Changes made in a transaction count once it completes: counting them earlier would let a
+ * reader tag data from before the change with the version after it.
+ */
+@Component
+public class DataVersion {
+
+    /**
+     * Start time of this instance, which tells the versions of different runs apart as each run
+     * counts from zero.
+     */
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public void increment() {
+        TransactionCallbacks.afterCompletion(version::incrementAndGet);
+    }
+}
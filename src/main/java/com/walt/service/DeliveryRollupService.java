@@ -0,0 +1,86 @@
+package com.walt.service;
+
+import com.walt.config.DeliveryRollupProperties;
+import com.walt.dao.CityRepository;
+import com.walt.dao.DeliveryRollupRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.entity.City;
+import com.walt.entity.Delivery;
+import com.walt.entity.DeliveryRollup;
+import com.walt.entity.DriverSummary;
+import com.walt.entity.RollupGranularity;
+import com.walt.exceptions.NoSuchCityException;
+import com.walt.exceptions.NoSuchDriverException;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Delivery analytics by hour, day and week, answered from rollups which are updated as
+ * deliveries are saved instead of scanning the deliveries.
+ * <p>
+ * Rollups are compacted over time: hourly and then daily buckets are dropped once they are older
+ * than their retention, so older ranges have to be asked for at a coarser granularity; at a
+ * compacted one they come back empty.
+ * <p>
+ * Recording is best-effort: it runs after the deliveries are committed, and deliveries whose
+ * rollup update fails are left out of the rollups rather than failing the order.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeliveryRollupService {
+
+    private final DeliveryRollupRepository rollupRepository;
+    private final CityRepository cityRepository;
+    private final DriverRepository driverRepository;
+    private final DeliveryRollupProperties properties;
+
+    /**
+     * Adds saved deliveries to their buckets, in a transaction of its own.
+     */
+    public void record(List<Delivery> deliveries) {
+        if (!deliveries.isEmpty()) {
+            rollupRepository.add(deliveries);
+        }
+    }
+
+    /**
+     * Buckets of the city overlapping the range from {@code from} up to, excluding, {@code to}.
+     */
+    public List<DeliveryRollup> getCityRollups(String cityName, RollupGranularity granularity,
+                                               LocalDateTime from, LocalDateTime to) {
+        City city = cityRepository.findByName(cityName).orElseThrow(NoSuchCityException::new);
+        if (!from.isBefore(to)) {
+            return Collections.emptyList();
+        }
+        return rollupRepository.findByCity(granularity, city, granularity.bucketOf(from), to);
+    }
+
+    /**
+     * Buckets of the driver overlapping the range from {@code from} up to, excluding, {@code to}.
+     */
+    public List<DeliveryRollup> getDriverRollups(String driverName, RollupGranularity granularity,
+                                                 LocalDateTime from, LocalDateTime to) {
+        DriverSummary driver = driverRepository.findSummaryByName(driverName).orElseThrow(NoSuchDriverException::new);
+        if (!from.isBefore(to)) {
+            return Collections.emptyList();
+        }
+        return rollupRepository.findByDriver(granularity, driver.getId(), granularity.bucketOf(from), to);
+    }
+
+    @Scheduled(initialDelayString = "${walt.rollups.compaction-interval:PT1H}",
+               fixedDelayString = "${walt.rollups.compaction-interval:PT1H}")
+    public void compact() {
+        LocalDateTime now = LocalDateTime.now();
+        rollupRepository.deleteBefore(RollupGranularity.HOUR,
+                                      RollupGranularity.HOUR.bucketOf(now.minus(properties.getHourRetention())));
+        rollupRepository.deleteBefore(RollupGranularity.DAY,
+                                      RollupGranularity.DAY.bucketOf(now.minus(properties.getDayRetention())));
+    }
+}
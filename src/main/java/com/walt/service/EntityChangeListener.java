@@ -0,0 +1,65 @@
+package com.walt.service;
+
+import com.walt.entity.City;
+import com.walt.entity.Driver;
+import com.walt.index.DriverAvailabilityIndex;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import lombok.RequiredArgsConstructor;
+
+import static com.walt.config.CacheConfig.CITIES_BY_NAME;
+import static com.walt.config.CacheConfig.DRIVERS_BY_NAME;
+
+/**
+ * Entity listener for drivers and cities written through JPA. Once the transaction completes it
+ * evicts the cities they belong to from the {@link DriverAvailabilityIndex}, which reads them
+ * again with the change on their next lookup, and then increases the {@link DataVersion}. The
+ * cached lookups of drivers, and of cities on a city change, are emptied as well: changes flushed
+ * by dirty checking never pass through the evicting repository methods.
+ * <p>
+ * Hibernate gets it from the application context, see {@code SpringBeanContainer}. The index is
+ * only looked up on the first change, as it needs the repositories of the entity manager factory
+ * which creates this listener.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityChangeListener {
+
+    private final DataVersion dataVersion;
+    private final CacheManager cacheManager;
+    private final ObjectProvider<DriverAvailabilityIndex> availabilityIndex;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onChange(Object entity) {
+        if (entity instanceof Driver) {
+            TransactionCallbacks.afterCompletion(() -> {
+                clear(DRIVERS_BY_NAME);
+                availabilityIndex.getObject().evictCitiesOf((Driver) entity);
+            });
+        } else if (entity instanceof City) {
+            TransactionCallbacks.afterCompletion(() -> {
+                clear(CITIES_BY_NAME);
+                clear(DRIVERS_BY_NAME);
+                availabilityIndex.getObject().evict((City) entity);
+            });
+        }
+        dataVersion.increment();
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.walt.service;
+
+import com.walt.config.OrderIntakeConfig;
+import com.walt.config.OrderIntakeProperties;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
+import com.walt.entity.OrderStatus;
+import com.walt.exceptions.OrderQueueFullException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import lombok.Value;
+
+/**
+ * Accepts orders without blocking the caller. Orders wait on a bounded queue, which is drained by
+ * a fixed number of workers, each taking whatever is queued up to the batch size and placing it
+ * with {@link WaltService#createOrdersAndAssignDrivers}. The outcome can be polled by order id
+ * for a while afterwards.
+ * <p>
+ * When the queue is full, new orders are rejected right away instead of piling up, so callers
+ * get explicit backpressure.
+ */
+@Service
+public class OrderIntakeService {
+
+    public static final String QUEUED_ORDERS = "walt.orders.intake.queued";
+
+    private static final Logger log = LoggerFactory.getLogger(OrderIntakeService.class);
+    private static final String ASSIGNMENT_FAILED = "The order could not be placed, please submit it again";
+
+    private final WaltService waltService;
+    private final OrderIntakeProperties properties;
+    private final ExecutorService workers;
+    private final BlockingQueue<PendingOrder> queue;
+    private final Cache<Long, OrderStatus> statuses;
+    private final AtomicLong orderSequence = new AtomicLong();
+
+    public OrderIntakeService(WaltService waltService,
+                              OrderIntakeProperties properties,
+                              @Qualifier(OrderIntakeConfig.ORDER_INTAKE_EXECUTOR) ExecutorService workers,
+                              MeterRegistry meterRegistry) {
+        this.waltService = waltService;
+        this.properties = properties;
+        this.workers = workers;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        meterRegistry.gaugeCollectionSize(QUEUED_ORDERS, Tags.empty(), queue);
+        this.statuses = Caffeine.newBuilder()
+                                .expireAfterWrite(properties.getStatusTtl())
+                                .maximumSize(properties.getStatusMaximumSize())
+                                .build();
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            workers.execute(this::drain);
+        }
+    }
+
+    /**
+     * Queues the order and returns its id.
+     *
+     * @throws OrderQueueFullException when the queue has no room left
+     */
+    public long submit(OrderRequest order) {
+        long orderId = orderSequence.incrementAndGet();
+        statuses.put(orderId, OrderStatus.queued(orderId));
+        if (!queue.offer(new PendingOrder(orderId, order))) {
+            statuses.invalidate(orderId);
+            throw new OrderQueueFullException();
+        }
+        return orderId;
+    }
+
+    public Optional<OrderStatus> getStatus(long orderId) {
+        return Optional.ofNullable(statuses.getIfPresent(orderId));
+    }
+
+    private void drain() {
+        List<PendingOrder> batch = new ArrayList<>(properties.getBatchSize());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                assign(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void assign(List<PendingOrder> batch) {
+        try {
+            List<OrderResult> results = waltService.createOrdersAndAssignDrivers(
+                    batch.stream().map(PendingOrder::getOrder).collect(Collectors.toList()));
+            for (int i = 0; i < batch.size(); i++) {
+                long orderId = batch.get(i).getOrderId();
+                statuses.put(orderId, OrderStatus.of(orderId, results.get(i)));
+            }
+        } catch (Throwable e) {
+            // the worker must outlive any failure, or the queue fills up and every order is rejected
+            log.error("Failed to assign a batch of {} orders", batch.size(), e);
+            batch.forEach(pending -> statuses.put(pending.getOrderId(),
+                                                  OrderStatus.rejected(pending.getOrderId(), ASSIGNMENT_FAILED)));
+        }
+    }
+
+    @Value
+    private static class PendingOrder {
+        long orderId;
+        OrderRequest order;
+    }
+}
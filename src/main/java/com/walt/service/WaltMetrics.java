@@ -0,0 +1,89 @@
+package com.walt.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Meters of the order assignment path. Timers publish percentile histograms, so latency
+ * quantiles can be aggregated across instances by the monitoring backend.
+ */
+@Component
+public class WaltMetrics {
+
+    public static final String DRIVER_MATCHING = "walt.driver.matching";
+    public static final String DELIVERY_SAVE = "walt.delivery.save";
+    public static final String RANK_REPORT = "walt.report.rank";
+    public static final String ERRORS = "walt.errors";
+
+    private final Timer driverMatching;
+    private final Timer batchDriverMatching;
+    private final Timer deliverySave;
+    private final Timer batchDeliverySave;
+    private final Timer rankReport;
+    private final Timer cityRankReport;
+    private final Counter noDriverFound;
+    private final Counter noSuchCity;
+
+    public WaltMetrics(MeterRegistry registry) {
+        driverMatching = timer(registry, DRIVER_MATCHING, "Time to pick and reserve a driver", "mode", "single");
+        batchDriverMatching = timer(registry, DRIVER_MATCHING, "Time to pick and reserve a driver", "mode", "batch");
+        deliverySave = timer(registry, DELIVERY_SAVE, "Time to save a delivery", "mode", "single");
+        batchDeliverySave = timer(registry, DELIVERY_SAVE, "Time to save a delivery", "mode", "batch");
+        rankReport = timer(registry, RANK_REPORT, "Time to build a driver rank report", "scope", "all");
+        cityRankReport = timer(registry, RANK_REPORT, "Time to build a driver rank report", "scope", "city");
+        noDriverFound = counter(registry, "NoDriverFoundException");
+        noSuchCity = counter(registry, "NoSuchCityException");
+    }
+
+    public <T> T timeDriverMatching(Supplier<T> matching) {
+        return driverMatching.record(matching);
+    }
+
+    public void timeBatchDriverMatching(Runnable matching) {
+        batchDriverMatching.record(matching);
+    }
+
+    public <T> T timeDeliverySave(Supplier<T> save) {
+        return deliverySave.record(save);
+    }
+
+    public void timeBatchDeliverySave(Runnable save) {
+        batchDeliverySave.record(save);
+    }
+
+    public <T> T timeRankReport(Supplier<T> report) {
+        return rankReport.record(report);
+    }
+
+    public <T> T timeCityRankReport(Supplier<T> report) {
+        return cityRankReport.record(report);
+    }
+
+    public void noDriverFound() {
+        noDriverFound.increment();
+    }
+
+    public void noSuchCity() {
+        noSuchCity.increment();
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String description, String tag, String value) {
+        return Timer.builder(name)
+                    .description(description)
+                    .tag(tag, value)
+                    .publishPercentileHistogram()
+                    .register(registry);
+    }
+
+    private static Counter counter(MeterRegistry registry, String exception) {
+        return Counter.builder(ERRORS)
+                      .description("Orders and lookups rejected with an exception")
+                      .tag("exception", exception)
+                      .register(registry);
+    }
+}
@@ -1,15 +1,23 @@
 package com.walt.service;
 
 import com.walt.entity.City;
+import com.walt.entity.CursorPage;
 import com.walt.entity.Customer;
 import com.walt.entity.Delivery;
+import com.walt.entity.DeliverySummary;
 import com.walt.entity.Driver;
 import com.walt.entity.DriverDistance;
+import com.walt.entity.DriverSummary;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
 import com.walt.entity.Restaurant;
+import com.walt.entity.SlotAvailability;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface WaltService {
 
@@ -17,16 +25,68 @@ public interface WaltService {
                                         Restaurant restaurant,
                                         LocalDateTime deliveryTime);
 
+    /**
+     * Creates a delivery for every order of the batch, keeping least busy assignment across the
+     * whole batch. Orders which cannot be served are reported in their result instead of failing
+     * the batch; results are in the same order as the orders.
+     */
+    List<OrderResult> createOrdersAndAssignDrivers(List<OrderRequest> orders);
+
     List<DriverDistance> getDriverRankReport();
 
     List<DriverDistance> getDriverRankReportByCity(City city);
 
-    List<Driver> getAllDrivers();
+    /**
+     * Page of the rank report: the drivers after the first {@code offset}, at most {@code limit}
+     * of them, read from a ranking kept sorted as deliveries are saved.
+     */
+    List<DriverDistance> getDriverLeaderboard(int offset, int limit);
+
+    List<DriverDistance> getDriverLeaderboardByCity(City city, int offset, int limit);
+
+    /**
+     * @throws com.walt.exceptions.NoSuchCityException when there is no city of that name
+     */
+    City getCity(String cityName);
+
+    List<DriverSummary> getAllDrivers();
+
+    List<DeliverySummary> getAllDeliveries();
 
-    List<Delivery> getAllDeliveries();
+    /**
+     * Returns up to {@code limit} drivers with an id greater than {@code afterId}, ordered by id.
+     * A {@code null} cursor starts from the first driver.
+     */
+    CursorPage<DriverSummary> getDrivers(Long afterId, int limit);
 
-    Optional<Driver> getDriverByName(String name);
+    /**
+     * Returns up to {@code limit} deliveries with an id greater than {@code afterId}, ordered by id.
+     * A {@code null} cursor starts from the first delivery.
+     */
+    CursorPage<DeliverySummary> getDeliveries(Long afterId, int limit);
+
+    /**
+     * Passes every driver, ordered by id, to the consumer while they are read from the database,
+     * without holding the whole table in memory.
+     */
+    void streamDrivers(Consumer<DriverSummary> consumer);
+
+    /**
+     * Passes every delivery, ordered by id, to the consumer while they are read from the database,
+     * without holding the whole table in memory.
+     */
+    void streamDeliveries(Consumer<DeliverySummary> consumer);
+
+    Optional<DriverSummary> getDriverByName(String name);
 
     Optional<Driver> locateDriverForDeliveryAt(String cityName, LocalDateTime deliveryTime);
+
+    Optional<Driver> locateNearestDriverForDeliveryAt(String cityName, GeoLocation location, LocalDateTime deliveryTime);
+
+    /**
+     * Drivers of the city free for a delivery starting at every hour from {@code from} until
+     * {@code to}, e.g. for a dispatch view of the next hours.
+     */
+    List<SlotAvailability> getAvailableDrivers(String cityName, LocalDateTime from, LocalDateTime to);
 }
 
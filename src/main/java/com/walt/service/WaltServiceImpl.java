@@ -1,27 +1,58 @@
 package com.walt.service;
 
 import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
 import com.walt.dao.DeliveryRepository;
 import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
 import com.walt.entity.City;
+import com.walt.entity.CursorPage;
 import com.walt.entity.Customer;
 import com.walt.entity.Delivery;
+import com.walt.entity.DeliverySummary;
 import com.walt.entity.Driver;
 import com.walt.entity.DriverDistance;
+import com.walt.entity.DriverSummary;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
 import com.walt.entity.Restaurant;
+import com.walt.entity.SlotAvailability;
 import com.walt.exceptions.NoDriverFoundException;
 import com.walt.exceptions.NoSuchCityException;
+import com.walt.exceptions.NoSuchRestaurantException;
+import com.walt.index.DeliveryEventLog;
+import com.walt.index.DriverAvailabilityIndex;
+import com.walt.index.Reservation;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
 
 import lombok.RequiredArgsConstructor;
 
@@ -30,95 +61,390 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class WaltServiceImpl implements WaltService {
 
+    private static final Logger log = LoggerFactory.getLogger(WaltServiceImpl.class);
     private static final int MIN_DELIVERY_DISTANCE = 0;
     private static final int MAX_DELIVERY_DISTANCE = 20;
+    private static final int MAX_ASSIGNMENT_ATTEMPTS = 3;
+    private static final String MISSING_CUSTOMER_NAME = "Customer name is required";
+    private static final String MISSING_DELIVERY_TIME = "Delivery time is required";
+    private static final String NON_POSITIVE_DURATION = "Delivery duration must be positive";
+    private static final String SAVE_FAILED = "The delivery could not be saved";
+    private static final int STREAM_CLEAR_INTERVAL = 500;
 
     private final DriverRepository driverRepository;
     private final DeliveryRepository deliveryRepository;
     private final CityRepository cityRepository;
+    private final CustomerRepository customerRepository;
+    private final RestaurantRepository restaurantRepository;
+    private final DriverAvailabilityIndex availabilityIndex;
+    private final EntityManager entityManager;
+    private final WaltMetrics metrics;
+    private final DeliveryRollupService rollupService;
+    private final DeliveryEventLog eventLog;
+    private final DataVersion dataVersion;
 
     @Override
     public Delivery createOrderAndAssignDriver(Customer customer,
                                                Restaurant restaurant,
                                                LocalDateTime deliveryTime) {
-        Driver matchedDriver = findMatchDriverOrElseThrow(deliveryTime, restaurant.getCity());
+        return createOrderAndAssignDriver(customer, restaurant, deliveryTime,
+                                          deliveryTime.plus(Delivery.DEFAULT_DURATION));
+    }
+
+    @Override
+    public List<OrderResult> createOrdersAndAssignDrivers(List<OrderRequest> orders) {
+        Map<String, Restaurant> restaurantsByName = findRestaurantsByName(orders);
+        Map<String, Customer> customersByName = findOrCreateCustomers(orders, restaurantsByName);
+
+        OrderResult[] results = new OrderResult[orders.size()];
+        List<Integer> pendingOrders = new ArrayList<>();
+        List<Delivery> pendingDeliveries = new ArrayList<>();
+        Map<City, List<Delivery>> deliveriesByCity = new LinkedHashMap<>();
+        for (int i = 0; i < orders.size(); i++) {
+            OrderRequest order = orders.get(i);
+            Restaurant restaurant = restaurantsByName.get(order.getRestaurantName());
+            String error = validate(order, restaurant);
+            if (error != null) {
+                results[i] = OrderResult.rejected(order, error);
+                continue;
+            }
+            Customer customer = customersByName.get(order.getCustomerName());
+            Delivery delivery = Delivery.builder()
+                                        .restaurant(restaurant)
+                                        .customer(customer)
+                                        .deliveryTime(order.getDeliveryTime())
+                                        .endTime(endTimeOf(order))
+                                        .distance(getDeliveryDistance(restaurant, customer))
+                                        .build();
+            deliveriesByCity.computeIfAbsent(restaurant.getCity(), city -> new ArrayList<>()).add(delivery);
+            pendingOrders.add(i);
+            pendingDeliveries.add(delivery);
+        }
+
+        List<Reservation> reservations = new ArrayList<>();
+        metrics.timeBatchDriverMatching(() -> deliveriesByCity.forEach(
+                (city, deliveries) -> reservations.addAll(availabilityIndex.reserveAll(city, deliveries))));
+        List<Delivery> assignedDeliveries = pendingDeliveries.stream()
+                                                             .filter(delivery -> delivery.getDriver() != null)
+                                                             .collect(Collectors.toList());
+        try {
+            metrics.timeBatchDeliverySave(() -> deliveryRepository.insertAll(assignedDeliveries));
+        } catch (DataIntegrityViolationException e) {
+            // a slot was taken behind the index's back, reload the cities and place the orders one by one
+            deliveriesByCity.keySet().forEach(availabilityIndex::evict);
+            dataVersion.increment();
+            for (int pending = 0; pending < pendingOrders.size(); pending++) {
+                int i = pendingOrders.get(pending);
+                results[i] = createOrderAndAssignDriver(orders.get(i), pendingDeliveries.get(pending));
+            }
+            return Arrays.asList(results);
+        } catch (RuntimeException e) {
+            reservations.forEach(availabilityIndex::release);
+            dataVersion.increment();
+            throw e;
+        }
+        onSaved(assignedDeliveries);
 
-        return saveDelivery(customer, restaurant, deliveryTime, matchedDriver);
+        for (int pending = 0; pending < pendingOrders.size(); pending++) {
+            int i = pendingOrders.get(pending);
+            Delivery delivery = pendingDeliveries.get(pending);
+            if (delivery.getDriver() != null) {
+                results[i] = OrderResult.assigned(orders.get(i), delivery);
+            } else {
+                metrics.noDriverFound();
+                results[i] = OrderResult.rejected(orders.get(i), new NoDriverFoundException().getMessage());
+            }
+        }
+        return Arrays.asList(results);
     }
 
     @Override
     public List<DriverDistance> getDriverRankReport() {
-        return toDescOrderReportList(driverRepository.findAll());
+        return metrics.timeRankReport(availabilityIndex::rankReport);
     }
 
     @Override
     public List<DriverDistance> getDriverRankReportByCity(City city) {
-        return toDescOrderReportList(driverRepository.findAllDriversByCity(city));
+        return metrics.timeCityRankReport(() -> toDescOrderReportList(availabilityIndex.driverDistances(city)));
     }
 
     @Override
-    public List<Driver> getAllDrivers() {
-        return driverRepository.findAll();
+    public List<DriverDistance> getDriverLeaderboard(int offset, int limit) {
+        return availabilityIndex.leaderboard(offset, limit);
     }
 
     @Override
-    public List<Delivery> getAllDeliveries() {
-        return deliveryRepository.findAll();
+    public List<DriverDistance> getDriverLeaderboardByCity(City city, int offset, int limit) {
+        return availabilityIndex.leaderboard(city, offset, limit);
     }
 
     @Override
-    public Optional<Driver> getDriverByName(String name) {
-        return driverRepository.findByName(name);
+    public City getCity(String cityName) {
+        return findCityOrElseThrow(cityName);
+    }
+
+    @Override
+    public List<DriverSummary> getAllDrivers() {
+        return driverRepository.findAllSummaries();
+    }
+
+    @Override
+    public List<DeliverySummary> getAllDeliveries() {
+        return deliveryRepository.findAllSummaries();
+    }
+
+    @Override
+    public CursorPage<DriverSummary> getDrivers(Long afterId, int limit) {
+        List<DriverSummary> drivers = driverRepository.findSummariesAfter(cursorOrStart(afterId),
+                                                                          PageRequest.of(0, limit));
+        return toCursorPage(drivers, limit, DriverSummary::getId);
+    }
+
+    @Override
+    public CursorPage<DeliverySummary> getDeliveries(Long afterId, int limit) {
+        List<DeliverySummary> deliveries = deliveryRepository.findSummariesAfter(cursorOrStart(afterId),
+                                                                                 PageRequest.of(0, limit));
+        return toCursorPage(deliveries, limit, DeliverySummary::getId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamDrivers(Consumer<DriverSummary> consumer) {
+        stream(driverRepository.streamAllSummaries(), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamDeliveries(Consumer<DeliverySummary> consumer) {
+        stream(deliveryRepository.streamAllSummaries(), consumer);
+    }
+
+    @Override
+    public Optional<DriverSummary> getDriverByName(String name) {
+        return driverRepository.findSummaryByName(name);
     }
 
     @Override
     public Optional<Driver> locateDriverForDeliveryAt(String cityName, LocalDateTime deliveryTime) {
-        City city = cityRepository.findByName(cityName)
-                                  .orElseThrow(NoSuchCityException::new);
-        return driverRepository.findAllDriversByCity(city)
-                               .stream()
-                               .filter(availableForDeliveryAt(deliveryTime))
-                               .min(getComparatorForLeastBusy());
+        return availabilityIndex.findLeastBusyAvailable(findCityOrElseThrow(cityName), deliveryTime,
+                                                        deliveryTime.plus(Delivery.DEFAULT_DURATION));
+    }
+
+    @Override
+    public Optional<Driver> locateNearestDriverForDeliveryAt(String cityName,
+                                                             GeoLocation location,
+                                                             LocalDateTime deliveryTime) {
+        return availabilityIndex.findNearestAvailable(findCityOrElseThrow(cityName), location, deliveryTime,
+                                                      deliveryTime.plus(Delivery.DEFAULT_DURATION));
+    }
+
+    @Override
+    public List<SlotAvailability> getAvailableDrivers(String cityName, LocalDateTime from, LocalDateTime to) {
+        City city = findCityOrElseThrow(cityName);
+        if (!from.isBefore(to)) {
+            return Collections.emptyList();
+        }
+        return availabilityIndex.findAvailable(city, from, to, Delivery.DEFAULT_DURATION);
+    }
+
+    private City findCityOrElseThrow(String cityName) {
+        return cityRepository.findByName(cityName)
+                             .orElseThrow(() -> {
+                                 metrics.noSuchCity();
+                                 return new NoSuchCityException();
+                             });
     }
 
     private static int descendingComparator(DriverDistance o1, DriverDistance o2) {
         return Double.compare(o2.getTotalDistance(), o1.getTotalDistance());
     }
 
-    @Deprecated
-    private Driver findMatchDriverOrElseThrow(LocalDateTime deliveryTime, City city) {
-        return driverRepository.findAllDriversByCity(city)
-                               .stream()
-                               .filter(availableForDeliveryAt(deliveryTime))
-                               .min(getComparatorForLeastBusy())
-                               .orElseThrow(NoDriverFoundException::new);
+    private static long cursorOrStart(Long afterId) {
+        return afterId != null ? afterId : 0L;
+    }
+
+    private static <T> CursorPage<T> toCursorPage(List<T> items, int limit, ToLongFunction<T> idOf) {
+        Long nextCursor = items.size() < limit ? null : idOf.applyAsLong(items.get(items.size() - 1));
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    /**
+     * Hands the entities of a repository stream to the consumer, clearing the persistence context
+     * regularly so memory stays flat however many rows are read.
+     */
+    private <T> void stream(Stream<T> entities, Consumer<T> consumer) {
+        try (entities) {
+            Iterator<T> iterator = entities.iterator();
+            for (int streamed = 1; iterator.hasNext(); streamed++) {
+                consumer.accept(iterator.next());
+                if (streamed % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    private Delivery createOrderAndAssignDriver(Customer customer,
+                                                Restaurant restaurant,
+                                                LocalDateTime deliveryTime,
+                                                LocalDateTime endTime) {
+        City city = restaurant.getCity();
+        double distance = getDeliveryDistance(restaurant, customer);
+
+        for (int attempt = 1; ; attempt++) {
+            Reservation reservation = reserveDriverOrElseThrow(deliveryTime, endTime, city, distance);
+            Delivery delivery;
+            try {
+                delivery = saveDelivery(customer, restaurant, deliveryTime, endTime, reservation.getDriver(),
+                                        distance);
+            } catch (DataIntegrityViolationException e) {
+                // the slot was taken behind the index's back, reload the city and try again
+                availabilityIndex.evict(city);
+                dataVersion.increment();
+                if (attempt == MAX_ASSIGNMENT_ATTEMPTS) {
+                    throw e;
+                }
+                continue;
+            } catch (RuntimeException e) {
+                availabilityIndex.release(reservation);
+                dataVersion.increment();
+                throw e;
+            }
+            onSaved(Collections.singletonList(delivery));
+            return delivery;
+        }
+    }
+
+    private OrderResult createOrderAndAssignDriver(OrderRequest order, Delivery delivery) {
+        try {
+            return OrderResult.assigned(order, createOrderAndAssignDriver(delivery.getCustomer(),
+                                                                          delivery.getRestaurant(),
+                                                                          delivery.getDeliveryTime(),
+                                                                          delivery.getEndTime()));
+        } catch (NoDriverFoundException e) {
+            return OrderResult.rejected(order, e.getMessage());
+        } catch (DataIntegrityViolationException e) {
+            // the message carries the SQL of the failed statement, which is no business of the client
+            log.warn("Failed to save a delivery of {}", order.getCustomerName(), e);
+            return OrderResult.rejected(order, SAVE_FAILED);
+        }
+    }
+
+    private static String validate(OrderRequest order, Restaurant restaurant) {
+        if (order.getCustomerName() == null) {
+            return MISSING_CUSTOMER_NAME;
+        }
+        if (order.getDeliveryTime() == null) {
+            return MISSING_DELIVERY_TIME;
+        }
+        if (order.getDuration() != null && (order.getDuration().isNegative() || order.getDuration().isZero())) {
+            return NON_POSITIVE_DURATION;
+        }
+        if (restaurant == null) {
+            return new NoSuchRestaurantException().getMessage();
+        }
+        return null;
+    }
+
+    private static LocalDateTime endTimeOf(OrderRequest order) {
+        Duration duration = order.getDuration() != null ? order.getDuration() : Delivery.DEFAULT_DURATION;
+        return order.getDeliveryTime().plus(duration);
+    }
+
+    private Map<String, Restaurant> findRestaurantsByName(List<OrderRequest> orders) {
+        Set<String> names = orders.stream()
+                                  .map(OrderRequest::getRestaurantName)
+                                  .filter(Objects::nonNull)
+                                  .collect(Collectors.toSet());
+        return restaurantRepository.findAllByNameIn(names)
+                                   .stream()
+                                   .collect(Collectors.toMap(Restaurant::getName,
+                                                             Function.identity(),
+                                                             (first, second) -> first));
+    }
+
+    /**
+     * Looks all customers of the batch up with one query and saves the missing ones in the city of
+     * the restaurant they order from.
+     */
+    private Map<String, Customer> findOrCreateCustomers(List<OrderRequest> orders,
+                                                        Map<String, Restaurant> restaurantsByName) {
+        Set<String> names = orders.stream()
+                                  .map(OrderRequest::getCustomerName)
+                                  .filter(Objects::nonNull)
+                                  .collect(Collectors.toSet());
+        Map<String, Customer> customersByName = new HashMap<>();
+        customerRepository.findAllByNameIn(names)
+                          .forEach(customer -> customersByName.putIfAbsent(customer.getName(), customer));
+
+        Map<String, Customer> newCustomers = new LinkedHashMap<>();
+        for (OrderRequest order : orders) {
+            Restaurant restaurant = restaurantsByName.get(order.getRestaurantName());
+            String name = order.getCustomerName();
+            if (name != null && restaurant != null && !customersByName.containsKey(name)) {
+                newCustomers.putIfAbsent(name, new Customer(name, restaurant.getCity(), order.getCustomerAddress()));
+            }
+        }
+        customerRepository.saveAll(newCustomers.values())
+                          .forEach(customer -> customersByName.put(customer.getName(), customer));
+        return customersByName;
+    }
+
+    /**
+     * Runs once the deliveries are committed, so nothing here may fail the order: a failing rollup
+     * update is logged and the rollups miss those deliveries, like the event log does.
+     */
+    private void onSaved(List<Delivery> deliveries) {
+        try {
+            rollupService.record(deliveries);
+        } catch (RuntimeException e) {
+            log.error("Could not add {} saved deliveries to the rollups", deliveries.size(), e);
+        }
+        eventLog.append(deliveries);
+        dataVersion.increment();
+    }
+
+    private Reservation reserveDriverOrElseThrow(LocalDateTime deliveryTime,
+                                                LocalDateTime endTime,
+                                                City city,
+                                                double distance) {
+        return metrics.timeDriverMatching(() -> availabilityIndex.reserve(city, deliveryTime, endTime, distance))
+                      .orElseThrow(() -> {
+                          metrics.noDriverFound();
+                          return new NoDriverFoundException();
+                      });
     }
 
     private Delivery saveDelivery(Customer customer,
                                   Restaurant restaurant,
                                   LocalDateTime deliveryTime,
-                                  Driver driver) {
+                                  LocalDateTime endTime,
+                                  Driver driver,
+                                  double distance) {
 
-        return deliveryRepository.save(
+        return metrics.timeDeliverySave(() -> deliveryRepository.save(
                 Delivery.builder()
                         .driver(driver)
                         .restaurant(restaurant)
                         .customer(customer)
                         .deliveryTime(deliveryTime)
-                        .distance(getRandomDeliveryDistance())
+                        .endTime(endTime)
+                        .distance(distance)
                         .build()
-        );
-    }
-
-    private Predicate<Driver> availableForDeliveryAt(LocalDateTime deliveryTime) {
-
-        return driver -> deliveryRepository.findAllByDriver(driver)
-                                           .stream()
-                                           .noneMatch(deliveryAt(deliveryTime));
+        ));
     }
 
-    private Comparator<Driver> getComparatorForLeastBusy() {
-        return Comparator.comparingInt(driver -> deliveryRepository.findAllByDriver(driver).size());
+    /**
+     * Haversine distance between the restaurant and the customer, or a random one while either
+     * position is unknown.
+     */
+    private double getDeliveryDistance(Restaurant restaurant, Customer customer) {
+        GeoLocation from = restaurant.getLocation();
+        GeoLocation to = customer != null ? customer.getLocation() : null;
+        if (from == null || to == null) {
+            return getRandomDeliveryDistance();
+        }
+        return from.distanceKmTo(to);
     }
 
     private double getRandomDeliveryDistance() {
@@ -126,32 +452,8 @@ public class WaltServiceImpl implements WaltService {
                                 .nextInt(MIN_DELIVERY_DISTANCE, MAX_DELIVERY_DISTANCE + 1);
     }
 
-    private Predicate<Delivery> deliveryAt(LocalDateTime deliveryTime) {
-        return delivery -> Objects.equals(delivery.getDeliveryTime(), deliveryTime);
-    }
-
-    private List<DriverDistance> toDescOrderReportList(List<Driver> drivers) {
-        return drivers
-                .stream()
-                .map(this::toDriverDistance)
-                .sorted(WaltServiceImpl::descendingComparator)
-                .collect(Collectors.toList());
-    }
-
-    private DriverDistance toDriverDistance(Driver driver) {
-        return new DriverDistance() {
-            @Override
-            public Driver getDriver() {
-                return driver;
-            }
-
-            @Override
-            public Double getTotalDistance() {
-                return deliveryRepository.findAllByDriver(driver)
-                                         .stream()
-                                         .mapToDouble(Delivery::getDistance)
-                                         .sum();
-            }
-        };
+    private List<DriverDistance> toDescOrderReportList(List<DriverDistance> driverDistances) {
+        driverDistances.sort(WaltServiceImpl::descendingComparator);
+        return driverDistances;
     }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+-- Cities, customers, drivers and restaurants share one table, told apart by dtype.
+create table named_entity (
+    dtype   varchar(31) not null,
+    id      bigint auto_increment primary key,
+    name    varchar(255),
+    address varchar(255),
+    city_id bigint,
+    constraint fk_named_entity_city foreign key (city_id) references named_entity (id)
+);
+
+create table delivery (
+    id            bigint auto_increment primary key,
+    driver_id     bigint,
+    restaurant_id bigint,
+    customer_id   bigint,
+    delivery_time timestamp,
+    end_time      timestamp,
+    distance      double not null,
+    constraint fk_delivery_driver foreign key (driver_id) references named_entity (id),
+    constraint fk_delivery_restaurant foreign key (restaurant_id) references named_entity (id),
+    constraint fk_delivery_customer foreign key (customer_id) references named_entity (id),
+    -- a driver has at most one delivery starting at a given time; also serves lookups by driver
+    constraint uk_delivery_driver_time unique (driver_id, delivery_time)
+);
@@ -0,0 +1,8 @@
+-- findByName / findAllByNameIn filter on the entity type and the name.
+create index ix_named_entity_type_name on named_entity (dtype, name);
+
+-- findAllDriversByCity and the customers and restaurants of a city.
+create index ix_named_entity_city on named_entity (city_id, dtype);
+
+-- Time based lookups over all drivers, e.g. the deliveries of a day.
+create index ix_delivery_time on delivery (delivery_time);
@@ -0,0 +1,3 @@
+-- Position of restaurants and customers, and the last known position of drivers.
+alter table named_entity add column latitude double;
+alter table named_entity add column longitude double;
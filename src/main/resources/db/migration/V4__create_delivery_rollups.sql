@@ -0,0 +1,32 @@
+-- Delivery count and distance per city, driver and hour, day or week, kept up to date on every
+-- saved delivery. The key serves range queries of a city, the index those of a driver.
+create table delivery_rollup (
+    granularity    varchar(8) not null,
+    city_id        bigint not null,
+    bucket_start   timestamp not null,
+    driver_id      bigint not null,
+    delivery_count bigint not null,
+    total_distance double not null,
+    primary key (granularity, city_id, bucket_start, driver_id)
+);
+
+create index ix_delivery_rollup_driver on delivery_rollup (granularity, driver_id, bucket_start);
+
+-- Buckets of the deliveries saved before the rollups existed.
+insert into delivery_rollup (granularity, city_id, bucket_start, driver_id, delivery_count, total_distance)
+select 'HOUR', r.city_id, date_trunc('HOUR', d.delivery_time), d.driver_id, count(*), sum(d.distance)
+from delivery d join named_entity r on r.id = d.restaurant_id
+where r.city_id is not null and d.driver_id is not null
+group by r.city_id, date_trunc('HOUR', d.delivery_time), d.driver_id;
+
+insert into delivery_rollup (granularity, city_id, bucket_start, driver_id, delivery_count, total_distance)
+select 'DAY', r.city_id, date_trunc('DAY', d.delivery_time), d.driver_id, count(*), sum(d.distance)
+from delivery d join named_entity r on r.id = d.restaurant_id
+where r.city_id is not null and d.driver_id is not null
+group by r.city_id, date_trunc('DAY', d.delivery_time), d.driver_id;
+
+insert into delivery_rollup (granularity, city_id, bucket_start, driver_id, delivery_count, total_distance)
+select 'WEEK', r.city_id, date_trunc('WEEK', d.delivery_time), d.driver_id, count(*), sum(d.distance)
+from delivery d join named_entity r on r.id = d.restaurant_id
+where r.city_id is not null and d.driver_id is not null
+group by r.city_id, date_trunc('WEEK', d.delivery_time), d.driver_id;
@@ -0,0 +1,7 @@
+-- Ids are allocated from sequences in blocks of 50 (Hibernate's pooled optimizer), so inserts can be batched.
+-- A sequence value v hands out the ids v - 49 to v, so each sequence restarts 50 past the highest id in use.
+create sequence named_entity_seq increment by 50;
+alter sequence named_entity_seq restart with (select coalesce(max(id), 0) + 50 from named_entity);
+
+create sequence delivery_seq increment by 50;
+alter sequence delivery_seq restart with (select coalesce(max(id), 0) + 50 from delivery);
@@ -0,0 +1,112 @@
+package com.walt.dao;
+
+import com.walt.entity.City;
+import com.walt.entity.Customer;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.Restaurant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:deliveries;MODE=MYSQL")
+public class DeliveryRepositoryTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2030, 6, 1, 12, 0);
+
+    @Autowired
+    private DeliveryRepository deliveryRepository;
+    @Autowired
+    private CityRepository cityRepository;
+    @Autowired
+    private DriverRepository driverRepository;
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    public void whenDeliveriesAreInsertedAndSaved_theirIdsComeFromTheSameSequence() {
+        City city = cityRepository.save(new City("Ashdod"));
+        Driver driver = driverRepository.save(new Driver("Ashdod-driver", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Port", city, "Harbour 1"));
+        Customer customer = customerRepository.save(new Customer("Yael", city, "Marina 4"));
+
+        List<Delivery> inserted = IntStream.range(0, 120)
+                                           .mapToObj(hour -> new Delivery(driver, restaurant, customer,
+                                                                          NOON.plusHours(hour), 3))
+                                           .collect(Collectors.toList());
+        deliveryRepository.insertAll(inserted.subList(0, 60));
+        Delivery saved = deliveryRepository.save(inserted.get(60));
+        deliveryRepository.insertAll(inserted.subList(61, 120));
+
+        Set<Long> ids = inserted.stream().map(Delivery::getId).collect(Collectors.toSet());
+        assertEquals(120, ids.size());
+        assertEquals(ids, deliveryRepository.findAllByDriver(driver)
+                                            .stream()
+                                            .map(Delivery::getId)
+                                            .collect(Collectors.toSet()));
+        assertEquals(saved.getId(), inserted.get(60).getId());
+    }
+
+    @Test
+    public void whenDeliveryWindowsOverlap_theSecondDeliveryIsRejected() {
+        City city = cityRepository.save(new City("Yavne"));
+        Driver driver = driverRepository.save(new Driver("Yavne-driver", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Dunes", city, "Hayam 2"));
+        Customer customer = customerRepository.save(new Customer("Noa", city, "Hadar 9"));
+
+        deliveryRepository.save(new Delivery(driver, restaurant, customer, NOON, 3));
+
+        assertThrows(DataIntegrityViolationException.class,
+                     () -> deliveryRepository.save(new Delivery(driver, restaurant, customer,
+                                                                NOON.plusMinutes(30), 3)));
+        assertThrows(DataIntegrityViolationException.class,
+                     () -> deliveryRepository.insertAll(List.of(
+                             new Delivery(driver, restaurant, customer, NOON.plusHours(2), 3),
+                             new Delivery(driver, restaurant, customer, NOON.minusMinutes(30), 3))));
+        assertThrows(DataIntegrityViolationException.class,
+                     () -> deliveryRepository.insertAll(List.of(
+                             new Delivery(driver, restaurant, customer, NOON.plusHours(3), 3),
+                             new Delivery(driver, restaurant, customer, NOON.plusHours(3).plusMinutes(59), 3))));
+        deliveryRepository.insertAll(List.of(new Delivery(driver, restaurant, customer, NOON.minusHours(1), 3),
+                                             new Delivery(driver, restaurant, customer, NOON.plusHours(1), 3)));
+
+        assertEquals(3, deliveryRepository.findAllByDriver(driver).size());
+    }
+
+    @Test
+    public void whenDeliveriesAreSavedThroughTheInheritedWrites_overlapsAreRejectedToo() {
+        City city = cityRepository.save(new City("Rehovot"));
+        Driver driver = driverRepository.save(new Driver("Rehovot-driver", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Orchard", city, "Herzl 50"));
+        Customer customer = customerRepository.save(new Customer("Tamar", city, "Weizmann 3"));
+        deliveryRepository.saveAndFlush(new Delivery(driver, restaurant, customer, NOON, 3));
+
+        assertThrows(DataIntegrityViolationException.class,
+                     () -> deliveryRepository.saveAndFlush(new Delivery(driver, restaurant, customer,
+                                                                        NOON.plusMinutes(30), 3)));
+        assertThrows(DataIntegrityViolationException.class,
+                     () -> deliveryRepository.saveAll(List.of(
+                             new Delivery(driver, restaurant, customer, NOON.plusHours(2), 3),
+                             new Delivery(driver, restaurant, customer, NOON.plusHours(2).plusMinutes(30), 3))));
+        assertThrows(DataIntegrityViolationException.class,
+                     () -> deliveryRepository.saveAllAndFlush(List.of(
+                             new Delivery(driver, restaurant, customer, NOON.minusMinutes(30), 3))));
+        deliveryRepository.saveAllAndFlush(List.of(new Delivery(driver, restaurant, customer, NOON.plusHours(1), 3),
+                                                   new Delivery(driver, restaurant, customer, NOON.plusHours(2), 3)));
+
+        assertEquals(3, deliveryRepository.findAllByDriver(driver).size());
+    }
+}
@@ -0,0 +1,110 @@
+package com.walt.dao;
+
+import com.walt.entity.City;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverSummary;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.NamedEntityRef;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static com.walt.config.CacheConfig.CITIES_BY_NAME;
+import static com.walt.config.CacheConfig.DRIVERS_BY_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:caching;MODE=MYSQL")
+public class RepositoryCachingTest {
+
+    @Autowired
+    private CityRepository cityRepository;
+    @Autowired
+    private DriverRepository driverRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void cacheStatisticsArePublishedAsMetrics() {
+        for (String cacheName : List.of(CITIES_BY_NAME, DRIVERS_BY_NAME)) {
+            assertNotNull(meterRegistry.find("cache.gets").tags("cache", cacheName, "result", "hit").functionCounter());
+            assertNotNull(meterRegistry.find("cache.evictions").tag("cache", cacheName).functionCounter());
+        }
+    }
+
+    @Test
+    public void whenCityIsLookedUp_itIsCachedUntilACityIsSaved() {
+        cityRepository.save(new City("Netanya"));
+
+        City city = cityRepository.findByName("Netanya").orElseThrow();
+
+        Cache.ValueWrapper cached = cacheManager.getCache(CITIES_BY_NAME).get("Netanya");
+        assertNotNull(cached);
+        assertEquals(city, cached.get());
+        assertEquals(city, cityRepository.findByName("Netanya").orElseThrow());
+
+        cityRepository.save(new City("Hadera"));
+
+        assertNull(cacheManager.getCache(CITIES_BY_NAME).get("Netanya"));
+    }
+
+    @Test
+    public void whenDriverIsLookedUp_itsSummaryIsCachedUntilADriverIsWritten() {
+        City city = cityRepository.save(new City("Rehovot"));
+        Driver driver = driverRepository.save(new Driver("Rehovot-driver", city));
+
+        assertEquals(DriverSummary.of(driver), driverRepository.findSummaryByName("Rehovot-driver").orElseThrow());
+        assertNotNull(cacheManager.getCache(DRIVERS_BY_NAME).get("Rehovot-driver"));
+
+        Driver newDriver = driverRepository.save(new Driver("Rehovot-driver-2", city));
+        assertNull(cacheManager.getCache(DRIVERS_BY_NAME).get("Rehovot-driver"));
+
+        driverRepository.findSummaryByName("Rehovot-driver-2");
+        driverRepository.deleteById(newDriver.getId());
+        assertNull(cacheManager.getCache(DRIVERS_BY_NAME).get("Rehovot-driver-2"));
+        assertTrue(driverRepository.findSummaryByName("Rehovot-driver-2").isEmpty());
+    }
+
+    @Test
+    public void whenDriverIsChangedByDirtyChecking_itsSummaryIsEvictedToo() {
+        City city = cityRepository.save(new City("Modiin"));
+        Driver driver = driverRepository.save(new Driver("Modiin-driver", city));
+        driverRepository.findSummaryByName("Modiin-driver");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> driverRepository.findById(driver.getId())
+                                          .orElseThrow()
+                                          .setLocation(new GeoLocation(31.8969, 35.0104)));
+
+        assertNull(cacheManager.getCache(DRIVERS_BY_NAME).get("Modiin-driver"));
+    }
+
+    @Test
+    public void whenDriversAreReadOutsideASession_theirCityIsFetchedWithThem() {
+        City city = cityRepository.save(new City("Eilat"));
+        driverRepository.save(new Driver("Eilat-driver", city));
+
+        assertEquals("Eilat", driverRepository.findByName("Eilat-driver").orElseThrow().getCity().getName());
+        DriverSummary summary = driverRepository.findAllSummaries()
+                                                .stream()
+                                                .filter(driver -> driver.getName().equals("Eilat-driver"))
+                                                .findAny()
+                                                .orElseThrow();
+        assertEquals(new NamedEntityRef(city.getId(), "Eilat"), summary.getCity());
+    }
+}
@@ -0,0 +1,21 @@
+package com.walt.entity;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Entity fixtures for tests which run without a database.
+ */
+public final class TestEntities {
+
+    private TestEntities() {
+    }
+
+    /**
+     * Gives the entity the id it would have once persisted, so it is equal to other instances
+     * with that id.
+     */
+    public static <T extends NamedEntity> T withId(T entity, Long id) {
+        ReflectionTestUtils.setField(entity, NamedEntity.class, "id", id, Long.class);
+        return entity;
+    }
+}
@@ -0,0 +1,214 @@
+package com.walt.index;
+
+import com.walt.entity.City;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverBooking;
+import com.walt.entity.DriverDeliveryStats;
+import com.walt.entity.DriverDistance;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.NamedEntityRef;
+import com.walt.entity.SlotAvailability;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.walt.entity.TestEntities.withId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CityBookingsTest {
+
+    private static final LocalDateTime TEN_O_CLOCK = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    private final City city = new City("Tiberias");
+    private final Driver first = withId(new Driver("First", city), 1L);
+    private final Driver second = withId(new Driver("Second", city), 2L);
+    private final Driver third = withId(new Driver("Third", city), 3L);
+
+    @Test
+    public void whenDriversAreEquallyBusy_shouldTakeThemInRepositoryOrder() {
+        CityBookings cityBookings = cityBookingsOf(first, second, third);
+
+        assertEquals(Optional.of(first), reserve(cityBookings, TEN_O_CLOCK));
+        assertEquals(Optional.of(second), reserve(cityBookings, TEN_O_CLOCK.plusHours(1)));
+        assertEquals(Optional.of(third), reserve(cityBookings, TEN_O_CLOCK.plusHours(2)));
+        assertEquals(Optional.of(first), reserve(cityBookings, TEN_O_CLOCK.plusHours(3)));
+    }
+
+    @Test
+    public void whenLeastBusyDriverIsBooked_shouldTakeTheNextLeastBusy() {
+        CityBookings cityBookings = cityBookingsOf(first, second, third);
+        cityBookings.addStats(new DriverDeliveryStats(1L, 1L, 5.0));
+        cityBookings.addStats(new DriverDeliveryStats(2L, 3L, 5.0));
+        cityBookings.addStats(new DriverDeliveryStats(3L, 2L, 5.0));
+        cityBookings.addBooking(new DriverBooking(1L, TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1)));
+
+        assertEquals(Optional.of(third), cityBookings.findLeastBusyAvailable(TEN_O_CLOCK.plusMinutes(30),
+                                                                            TEN_O_CLOCK.plusMinutes(90)));
+        assertEquals(Optional.of(first), cityBookings.findLeastBusyAvailable(TEN_O_CLOCK.plusHours(1),
+                                                                            TEN_O_CLOCK.plusHours(2)));
+    }
+
+    @Test
+    public void whenReservationIsReleased_shouldMakeTheDriverLeastBusyAgain() {
+        CityBookings cityBookings = cityBookingsOf(first, second);
+
+        Reservation reservation = cityBookings.reserveLeastBusyAvailable(TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1), 5)
+                                              .orElseThrow();
+        assertEquals(first, reservation.getDriver());
+        cityBookings.release(reservation);
+        cityBookings.release(reservation);
+
+        assertEquals(Optional.of(first), reserve(cityBookings, TEN_O_CLOCK));
+        assertEquals(Optional.of(second), reserve(cityBookings, TEN_O_CLOCK));
+        assertTrue(reserve(cityBookings, TEN_O_CLOCK.plusMinutes(59)).isEmpty());
+        assertEquals(10, cityBookings.getTotalDistance());
+    }
+
+    @Test
+    public void whenAvailabilityOfARangeIsAsked_shouldListTheFreeDriversOfEverySlot() {
+        CityBookings cityBookings = cityBookingsOf(first, second, third);
+        cityBookings.addStats(new DriverDeliveryStats(1L, 2L, 5.0));
+        cityBookings.addBooking(new DriverBooking(2L, TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1)));
+        cityBookings.addBooking(new DriverBooking(3L, TEN_O_CLOCK.plusMinutes(90), TEN_O_CLOCK.plusMinutes(120)));
+
+        List<SlotAvailability> slots = cityBookings.findAvailable(TEN_O_CLOCK, TEN_O_CLOCK.plusHours(3),
+                                                                  Duration.ofHours(1));
+
+        assertEquals(List.of(TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1), TEN_O_CLOCK.plusHours(2)),
+                     slots.stream().map(SlotAvailability::getSlotStart).collect(Collectors.toList()));
+        assertEquals(List.of("Third", "First"), namesOf(slots.get(0)));
+        assertEquals(List.of("Second", "First"), namesOf(slots.get(1)));
+        assertEquals(List.of("Second", "Third", "First"), namesOf(slots.get(2)));
+        assertEquals(3, slots.get(2).getFreeDriverCount());
+    }
+
+    @Test
+    public void whenDriversHavePositions_shouldFindTheNearestAvailable() {
+        GeoLocation promenade = new GeoLocation(32.7922, 35.5395);
+        first.setLocation(new GeoLocation(32.7950, 35.5400));
+        second.setLocation(new GeoLocation(32.8300, 35.5800));
+        third.setLocation(new GeoLocation(32.7000, 35.3000));
+        CityBookings cityBookings = cityBookingsOf(first, second, third);
+
+        assertEquals(Optional.of(first), cityBookings.findNearestAvailable(promenade, TEN_O_CLOCK,
+                                                                           TEN_O_CLOCK.plusHours(1)));
+
+        cityBookings.addBooking(new DriverBooking(1L, TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1)));
+        assertEquals(Optional.of(second), cityBookings.findNearestAvailable(promenade, TEN_O_CLOCK,
+                                                                            TEN_O_CLOCK.plusHours(1)));
+    }
+
+    @Test
+    public void whenNoPositionedDriverIsAvailable_shouldFindNone() {
+        first.setLocation(new GeoLocation(32.7950, 35.5400));
+        CityBookings cityBookings = cityBookingsOf(first, second);
+        cityBookings.addBooking(new DriverBooking(1L, TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1)));
+
+        assertTrue(cityBookings.findNearestAvailable(new GeoLocation(32.7922, 35.5395), TEN_O_CLOCK,
+                                                     TEN_O_CLOCK.plusHours(1)).isEmpty());
+    }
+
+    @Test
+    public void whenDeliveriesAreBooked_shouldKeepTheLeaderboardsRanked() {
+        Leaderboard globalLeaderboard = new Leaderboard();
+        CityBookings cityBookings = new CityBookings(globalLeaderboard);
+        CityBookings otherCityBookings = new CityBookings(globalLeaderboard);
+        Driver other = withId(new Driver("Other", new City("Safed")), 4L);
+        cityBookings.addDriver(first);
+        cityBookings.addDriver(second);
+        otherCityBookings.addDriver(other);
+        cityBookings.addStats(new DriverDeliveryStats(1L, 1L, 10.0));
+        otherCityBookings.addStats(new DriverDeliveryStats(4L, 1L, 12.0));
+
+        cityBookings.reserveLeastBusyAvailable(TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1), 15);
+
+        assertEquals(List.of(second, first), driversOf(cityBookings.leaderboard(0, 10)));
+        assertEquals(List.of(second, other, first), driversOf(globalLeaderboard.page(0, 10)));
+        assertEquals(List.of(other), driversOf(globalLeaderboard.page(1, 1)));
+
+        otherCityBookings.detach();
+        assertEquals(List.of(second, first), driversOf(globalLeaderboard.page(0, 10)));
+    }
+
+    @Test
+    public void whenCityIsLoadedTwiceConcurrently_detachingTheDuplicateKeepsTheInstalledRanking() {
+        Leaderboard globalLeaderboard = new Leaderboard();
+        CityBookings installed = new CityBookings(globalLeaderboard);
+        CityBookings duplicate = new CityBookings(globalLeaderboard);
+        for (CityBookings cityBookings : List.of(installed, duplicate)) {
+            cityBookings.addDriver(first);
+            cityBookings.addDriver(second);
+            cityBookings.addStats(new DriverDeliveryStats(2L, 1L, 10.0));
+        }
+
+        duplicate.detach();
+
+        assertEquals(List.of(second, first), driversOf(globalLeaderboard.page(0, 10)));
+    }
+
+    @Test
+    public void whenDriverIsRankedAgain_aPageListsItOnceWhileBothEntriesAreRanked() {
+        Leaderboard leaderboard = new Leaderboard();
+        Leaderboard.Entry previousEntry = Leaderboard.Entry.of(first, 10);
+        leaderboard.add(previousEntry);
+        leaderboard.add(Leaderboard.Entry.of(second, 15));
+        leaderboard.add(Leaderboard.Entry.of(first, 5));
+
+        assertEquals(List.of(second, first), driversOf(leaderboard.page(0, 10)));
+        assertEquals(List.of(first), driversOf(leaderboard.page(1, 10)));
+
+        leaderboard.remove(previousEntry);
+        assertEquals(5, leaderboard.page(1, 1).get(0).getTotalDistance());
+    }
+
+    @Test
+    public void whenEvictedCityKeepsBooking_theReloadedCityStaysRanked() {
+        Leaderboard globalLeaderboard = new Leaderboard();
+        CityBookings evicted = new CityBookings(globalLeaderboard);
+        evicted.addDriver(first);
+        evicted.detach();
+        CityBookings reloaded = new CityBookings(globalLeaderboard);
+        reloaded.addDriver(first);
+        reloaded.addDriver(second);
+        reloaded.addStats(new DriverDeliveryStats(2L, 1L, 10.0));
+
+        evicted.reserveLeastBusyAvailable(TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1), 15);
+
+        List<DriverDistance> ranking = globalLeaderboard.page(0, 10);
+        assertEquals(List.of(second, first), driversOf(ranking));
+        assertEquals(0, ranking.get(1).getTotalDistance());
+
+        reloaded.reserveLeastBusyAvailable(TEN_O_CLOCK, TEN_O_CLOCK.plusHours(1), 15);
+
+        ranking = globalLeaderboard.page(0, 10);
+        assertEquals(List.of(first, second), driversOf(ranking));
+        assertEquals(15, ranking.get(0).getTotalDistance());
+    }
+
+    private static CityBookings cityBookingsOf(Driver... drivers) {
+        CityBookings cityBookings = new CityBookings();
+        for (Driver driver : drivers) {
+            cityBookings.addDriver(driver);
+        }
+        return cityBookings;
+    }
+
+    private static Optional<Driver> reserve(CityBookings cityBookings, LocalDateTime deliveryTime) {
+        return cityBookings.reserveLeastBusyAvailable(deliveryTime, deliveryTime.plusHours(1), 5)
+                           .map(Reservation::getDriver);
+    }
+
+    private static List<String> namesOf(SlotAvailability slot) {
+        return slot.getFreeDrivers().stream().map(NamedEntityRef::getName).collect(Collectors.toList());
+    }
+
+    private static List<Driver> driversOf(List<DriverDistance> driverDistances) {
+        return driverDistances.stream().map(DriverDistance::getDriver).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,118 @@
+package com.walt.index;
+
+import com.walt.config.EventLogProperties;
+import com.walt.entity.City;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.walt.entity.TestEntities.withId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DeliveryEventLogTest {
+
+    private static final LocalDateTime TEN_O_CLOCK = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    private final City city = new City("Ramla");
+    private final Driver first = withId(new Driver("First", city), 1L);
+    private final Driver second = withId(new Driver("Second", city), 2L);
+
+    @TempDir
+    Path directory;
+    private long deliveryIds;
+
+    @Test
+    public void whenLogIsReopened_shouldRecoverEveryAppendedDelivery() throws Exception {
+        DeliveryEventLog eventLog = open();
+        eventLog.append(List.of(delivery(first, TEN_O_CLOCK, 4), delivery(second, TEN_O_CLOCK, 6)));
+        eventLog.append(List.of(delivery(first, TEN_O_CLOCK.plusHours(1), 5)));
+        eventLog.close();
+
+        DeliveryEventLog reopened = open();
+        DeliveryEventLog.Snapshot recovered = reopened.takeRecovered();
+        Map<Long, DriverHistory> histories = recovered.getHistories();
+        reopened.append(List.of(delivery(second, TEN_O_CLOCK.plusHours(2), 1)));
+        reopened.close();
+
+        assertEquals(2, histories.get(1L).getDeliveryCount());
+        assertEquals(9, histories.get(1L).getTotalDistance());
+        assertEquals(DeliverySlots.epochSecondOf(TEN_O_CLOCK.plusHours(1)), histories.get(1L).startAt(1));
+        assertEquals(1, histories.get(2L).getDeliveryCount());
+        assertEquals(3, recovered.getMaxDeliveryId());
+        DeliveryEventLog.Snapshot reopenedAgain = open().takeRecovered();
+        assertEquals(2, reopenedAgain.getHistories().get(2L).getDeliveryCount());
+        assertEquals(4, reopenedAgain.getMaxDeliveryId());
+    }
+
+    @Test
+    public void whenSnapshotIsTaken_shouldFoldTheClosedSegmentsAndDeleteThem() throws Exception {
+        DeliveryEventLog eventLog = open();
+        for (int hour = 0; hour < 5; hour++) {
+            eventLog.append(List.of(delivery(first, TEN_O_CLOCK.plusHours(hour), 2)));
+        }
+        eventLog.snapshot();
+        eventLog.append(List.of(delivery(second, TEN_O_CLOCK, 3)));
+        eventLog.close();
+
+        DeliveryEventLog.Snapshot recovered = open().takeRecovered();
+        Map<Long, DriverHistory> histories = recovered.getHistories();
+
+        assertEquals(1, segmentFiles());
+        assertEquals(6, recovered.getMaxDeliveryId());
+        assertEquals(5, histories.get(1L).getDeliveryCount());
+        assertEquals(5, histories.get(1L).getWindowCount());
+        assertEquals(10, histories.get(1L).getTotalDistance());
+        assertEquals(1, histories.get(2L).getDeliveryCount());
+    }
+
+    @Test
+    public void whenSnapshotIsTaken_shouldDropTheWindowsWhichEndedAndKeepTheEmptySegment() throws Exception {
+        DeliveryEventLog eventLog = open();
+        LocalDateTime yesterday = LocalDateTime.now().minusDays(1);
+        eventLog.append(List.of(delivery(first, yesterday, 2), delivery(first, TEN_O_CLOCK, 3)));
+        eventLog.snapshot();
+        long segments = segmentFiles();
+        eventLog.snapshot();
+        eventLog.snapshot();
+        eventLog.close();
+
+        DriverHistory history = open().takeRecovered().getHistories().get(1L);
+
+        assertEquals(segments, segmentFiles());
+        assertEquals(2, history.getDeliveryCount());
+        assertEquals(5, history.getTotalDistance());
+        assertEquals(1, history.getWindowCount());
+        assertEquals(DeliverySlots.epochSecondOf(TEN_O_CLOCK), history.startAt(0));
+    }
+
+    private DeliveryEventLog open() throws Exception {
+        EventLogProperties properties = new EventLogProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory);
+        properties.setSegmentRecords(2);
+        DeliveryEventLog eventLog = new DeliveryEventLog(properties);
+        eventLog.open();
+        return eventLog;
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    private Delivery delivery(Driver driver, LocalDateTime deliveryTime, double distance) {
+        Delivery delivery = new Delivery(driver, null, null, deliveryTime, distance);
+        delivery.setId(++deliveryIds);
+        return delivery;
+    }
+}
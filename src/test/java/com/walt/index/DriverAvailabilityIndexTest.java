@@ -0,0 +1,155 @@
+package com.walt.index;
+
+import com.walt.config.EventLogProperties;
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.entity.City;
+import com.walt.entity.Customer;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverDeliveryStats;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.Restaurant;
+import com.walt.service.WaltService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.walt.entity.TestEntities.withId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:availability-index;MODE=MYSQL")
+public class DriverAvailabilityIndexTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2030, 3, 1, 12, 0);
+    private static final GeoLocation HARBOUR = new GeoLocation(29.55, 34.95);
+
+    @Autowired
+    private WaltService waltService;
+    @Autowired
+    private DriverAvailabilityIndex availabilityIndex;
+    @Autowired
+    private CityRepository cityRepository;
+    @Autowired
+    private DriverRepository driverRepository;
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    public void whenDriverIsAddedToALoadedCity_itIsAssignedOrders() {
+        City city = cityRepository.save(new City("Eilat"));
+        driverRepository.save(new Driver("Eilat-first", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Reef", city, "Coral 1"));
+        Customer customer = customerRepository.save(new Customer("Tamar", city, "Beach 2"));
+        waltService.createOrderAndAssignDriver(customer, restaurant, NOON);
+
+        Driver added = driverRepository.save(new Driver("Eilat-second", city));
+        Delivery delivery = waltService.createOrderAndAssignDriver(customer, restaurant, NOON);
+
+        assertEquals(added, delivery.getDriver());
+    }
+
+    @Test
+    public void whenDriverLocationChanges_theNearestDriverLookupSeesIt() {
+        City city = cityRepository.save(new City("Arad"));
+        Driver driver = driverRepository.save(new Driver("Arad-driver", city));
+        assertTrue(waltService.locateNearestDriverForDeliveryAt("Arad", HARBOUR, NOON).isEmpty());
+
+        driver.setLocation(HARBOUR);
+        driverRepository.save(driver);
+        Optional<Driver> nearest = waltService.locateNearestDriverForDeliveryAt("Arad", HARBOUR, NOON);
+
+        assertEquals(Optional.of(driver), nearest);
+    }
+
+    @Test
+    public void whenReservationIsReleasedAfterItsCityWasReloaded_theReloadedCityKeepsItsBookings() {
+        City city = cityRepository.save(new City("Mitzpe Ramon"));
+        Driver driver = driverRepository.save(new Driver("Ramon-driver", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Crater", city, "Har Ardon 4"));
+        Customer customer = customerRepository.save(new Customer("Gil", city, "Nahal Ramon 8"));
+        Reservation reservation = availabilityIndex.reserve(city, NOON, NOON.plusHours(1), 5).orElseThrow();
+
+        availabilityIndex.evict(city);
+        Delivery delivery = waltService.createOrderAndAssignDriver(customer, restaurant, NOON);
+        availabilityIndex.release(reservation);
+
+        assertEquals(driver, delivery.getDriver());
+        assertTrue(availabilityIndex.findLeastBusyAvailable(city, NOON, NOON.plusHours(1)).isEmpty());
+        assertEquals(delivery.getDistance(), availabilityIndex.getTotalDistance(city));
+    }
+
+    @Test
+    public void whenCityIsEvictedWhileItIsRead_theNextLookupReadsItAgain() {
+        DriverRepository drivers = mock(DriverRepository.class);
+        DriverAvailabilityIndex index = new DriverAvailabilityIndex(drivers, mock(DeliveryRepository.class),
+                                                                    new SimpleMeterRegistry(),
+                                                                    mock(DeliveryEventLog.class),
+                                                                    ForkJoinPool.commonPool());
+        City city = withId(new City("Dimona"), 1L);
+        Driver first = withId(new Driver("Dimona-first", city), 1L);
+        Driver second = withId(new Driver("Dimona-second", city), 2L);
+        when(drivers.findAllDriversByCity(city))
+                .thenAnswer(invocation -> {
+                    // the second driver is saved and its city evicted before this read returns
+                    index.evict(city);
+                    return List.of(first);
+                })
+                .thenReturn(List.of(first, second));
+
+        assertEquals(1, index.driverDistances(city).size());
+        assertEquals(2, index.driverDistances(city).size());
+    }
+
+    @Test
+    public void whenEventLogMissedTheNewestDelivery_theIndexIsRestoredFromTheDatabase(@TempDir Path directory)
+            throws Exception {
+        EventLogProperties properties = new EventLogProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory);
+        DeliveryEventLog eventLog = new DeliveryEventLog(properties);
+        eventLog.open();
+        City city = withId(new City("Ofakim"), 1L);
+        Driver driver = withId(new Driver("Ofakim-driver", city), 1L);
+        Delivery logged = new Delivery(driver, null, null, NOON, 4);
+        logged.setId(1L);
+        eventLog.append(List.of(logged));
+        eventLog.close();
+
+        for (long maxDeliveryId : new long[] {1, 2}) {
+            DriverRepository drivers = mock(DriverRepository.class);
+            DeliveryRepository deliveries = mock(DeliveryRepository.class);
+            when(drivers.findAll()).thenReturn(List.of(driver));
+            when(deliveries.findMaxId()).thenReturn(maxDeliveryId);
+            when(deliveries.findDeliveryStats()).thenReturn(List.of(new DriverDeliveryStats(1L, 1L, 4.0)));
+            DeliveryEventLog reopened = new DeliveryEventLog(properties);
+            reopened.open();
+
+            new DriverAvailabilityIndex(drivers, deliveries, new SimpleMeterRegistry(), reopened,
+                                        ForkJoinPool.commonPool()).afterSingletonsInstantiated();
+            reopened.close();
+
+            verify(deliveries, times(maxDeliveryId == 1 ? 0 : 1)).findAllBookings();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.walt.index;
+
+import com.walt.entity.City;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverDeliveryStats;
+import com.walt.entity.DriverDistance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static com.walt.entity.TestEntities.withId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RankReportTest {
+
+    @Test
+    public void whenCitiesAreRankedInParallel_shouldMergeThemIntoOneDescendingRanking() {
+        List<CityBookings> cities = new ArrayList<>();
+        List<DriverDistance> expected = new ArrayList<>();
+        long driverId = 1;
+        for (int cityIndex = 0; cityIndex < 20; cityIndex++) {
+            City city = new City("city-" + cityIndex);
+            CityBookings cityBookings = new CityBookings();
+            for (int driverIndex = 0; driverIndex < 5; driverIndex++, driverId++) {
+                Driver driver = withId(new Driver("driver-" + driverId, city), driverId);
+                double distance = (driverId * 7) % 23;
+                cityBookings.addDriver(driver);
+                cityBookings.addStats(new DriverDeliveryStats(driverId, 1L, distance));
+                expected.addAll(cityBookings.ranking().stream()
+                                            .filter(driverDistance -> driverDistance.getDriver().equals(driver))
+                                            .collect(Collectors.toList()));
+            }
+            cities.add(cityBookings);
+        }
+        expected.sort(RankReport.LONGEST_DISTANCE_FIRST);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertEquals(expected, RankReport.of(pool, cities));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -1,21 +1,42 @@
 package com.walt.rest;
 
 import com.walt.entity.City;
+import com.walt.entity.CursorPage;
 import com.walt.entity.Customer;
 import com.walt.entity.Delivery;
+import com.walt.entity.DeliveryRollup;
+import com.walt.entity.DeliverySummary;
 import com.walt.entity.Driver;
+import com.walt.entity.DriverSummary;
+import com.walt.entity.DriverTotalDistance;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.NamedEntityRef;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
+import com.walt.entity.OrderStatus;
 import com.walt.entity.Restaurant;
+import com.walt.entity.RollupGranularity;
+import com.walt.entity.SlotAvailability;
+import com.walt.exceptions.NoSuchCityException;
+import com.walt.exceptions.OrderQueueFullException;
 import com.walt.rest.controller.WaltController;
+import com.walt.service.DataVersion;
+import com.walt.service.DeliveryRollupService;
+import com.walt.service.OrderIntakeService;
 import com.walt.service.WaltService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -24,23 +45,46 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import lombok.SneakyThrows;
 
+import static com.walt.entity.TestEntities.withId;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(WaltController.class)
 public class WaltControllerTest {
     public static final String ENDPOINT_DRIVERS = "/api/drivers";
     public static final String ENDPOINT_LOCATE_DRIVER = "/api/drivers/locate";
+    public static final String ENDPOINT_NEAREST_DRIVER = "/api/drivers/nearest";
+    public static final String ENDPOINT_AVAILABLE_DRIVERS = "/api/drivers/available";
+    public static final String ENDPOINT_LEADERBOARD = "/api/leaderboard";
+    public static final String ENDPOINT_REPORT = "/api/report";
+    public static final String ENDPOINT_CITY_ANALYTICS = "/api/analytics/cities";
     public static final String ENDPOINT_DELIVERIES = "/api/deliveries";
+    public static final String ENDPOINT_BATCH_ORDERS = "/api/orders/batch";
+    public static final String ENDPOINT_ORDERS = "/api/orders";
     public static final int LENGTH_NAME_DRIVER = 8;
     public static final int LENGTH_NAME_CITY = 8;
     public static final int LENGTH_CUSTOMER_NAME = 3;
@@ -48,21 +92,35 @@ public class WaltControllerTest {
     public static final int LENGTH_NAME_RESTAURANT = 5;
     private static final int MIN_DELIVERY_DISTANCE = 0;
     private static final int MAX_DELIVERY_DISTANCE = 20;
+    private static final AtomicLong DATA_VERSIONS = new AtomicLong();
     @Autowired
     private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
     @MockBean
     private WaltService waltService;
+    @MockBean
+    private OrderIntakeService orderIntakeService;
+    @MockBean
+    private DeliveryRollupService rollupService;
+    @MockBean
+    private DataVersion dataVersion;
 
     @BeforeEach
     public void foo() {
 
     }
 
+    @BeforeEach
+    public void startFromANewDataVersion() {
+        when(dataVersion.current()).thenReturn(DATA_VERSIONS.incrementAndGet());
+    }
+
     @WithMockUser
     @SneakyThrows
     @Test
     public void whenRequestAllDrivers_andHasDrivers_responseIsOK_JSON_withDrivers() {
-        List<Driver> drivers = createRandomDrivers(3);
+        List<DriverSummary> drivers = createRandomDriverSummaries(3);
 
         when(waltService.getAllDrivers()).thenReturn(drivers);
 
@@ -72,6 +130,34 @@ public class WaltControllerTest {
                .andExpect(jsonPath("$.length()").value(drivers.size()));
     }
 
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestAllDrivers_withTheCurrentETag_responseNotModified_untilTheDataChanges() {
+        when(waltService.getAllDrivers()).thenReturn(createRandomDriverSummaries(2));
+
+        String eTag = mockMvc.perform(get(ENDPOINT_DRIVERS))
+                             .andExpect(status().isOk())
+                             .andExpect(header().exists(HttpHeaders.ETAG))
+                             .andReturn()
+                             .getResponse()
+                             .getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get(ENDPOINT_DRIVERS).header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isNotModified());
+        mockMvc.perform(get(ENDPOINT_DRIVERS))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.length()").value(2));
+
+        verify(waltService, times(1)).getAllDrivers();
+
+        when(dataVersion.current()).thenReturn(DATA_VERSIONS.incrementAndGet());
+        mockMvc.perform(get(ENDPOINT_DRIVERS).header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isOk())
+               .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+
+        verify(waltService, times(2)).getAllDrivers();
+    }
+
     @WithMockUser
     @SneakyThrows
     @Test
@@ -87,7 +173,7 @@ public class WaltControllerTest {
     @SneakyThrows
     @Test
     public void whenRequestAllDeliveries_andHasDeliveries_responseIsOK_JSON_withDeliveries() {
-        List<Delivery> deliveries = createRandomDeliveries(3);
+        List<DeliverySummary> deliveries = createRandomDeliverySummaries(3);
 
         when(waltService.getAllDeliveries()).thenReturn(deliveries);
 
@@ -114,7 +200,7 @@ public class WaltControllerTest {
     @SneakyThrows
     @Test
     public void whenRequestGetDriverByName_andHasMatchingDriver_responseOK_withDriver() {
-        Optional<Driver> optionalDriver = Optional.of(createRandomDriver());
+        Optional<DriverSummary> optionalDriver = Optional.of(DriverSummary.of(createRandomDriver()));
         String driverName = optionalDriver.get().getName();
 
         when(waltService.getDriverByName(driverName)).thenReturn(optionalDriver);
@@ -129,8 +215,7 @@ public class WaltControllerTest {
     @SneakyThrows
     @Test
     public void whenRequestGetDriverByName_andHasNoMatchingDriver_responseNotFound() {
-        Optional<Driver> optionalDriver = Optional.of(createRandomDriver());
-        String driverName = optionalDriver.get().getName();
+        String driverName = createRandomDriver().getName();
 
         when(waltService.getDriverByName(driverName)).thenReturn(Optional.empty());
 
@@ -160,6 +245,326 @@ public class WaltControllerTest {
                .andExpect(jsonPath("$.name").value(driverName));
     }
 
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestLeaderboardPage_responseOk_withRankedDrivers() {
+        Driver driver = createRandomDriver();
+
+        when(waltService.getDriverLeaderboard(5, 2))
+                .thenReturn(List.of(new DriverTotalDistance(driver, 42.0)));
+
+        mockMvc.perform(get(ENDPOINT_LEADERBOARD).param("offset", "5").param("limit", "2"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[0].driver.name").value(driver.getName()))
+               .andExpect(jsonPath("$[0].totalDistance").value(42.0));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestLeaderboardOfUnknownCity_responseNotFound_evenWithTheCurrentETag() {
+        when(waltService.getCity(any(String.class))).thenThrow(new NoSuchCityException());
+        String eTag = mockMvc.perform(get(ENDPOINT_LEADERBOARD))
+                             .andExpect(status().isOk())
+                             .andReturn()
+                             .getResponse()
+                             .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(ENDPOINT_LEADERBOARD + "/{cityName}", createRandomCity().getName()))
+               .andExpect(status().isNotFound());
+        mockMvc.perform(get(ENDPOINT_LEADERBOARD + "/{cityName}", createRandomCity().getName())
+                                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isNotFound());
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestRankReportFromOffset_responseHasTheWholeRankingFromThere_untilTheDataChanges() {
+        List<Driver> drivers = createRandomDrivers(3);
+        for (int i = 0; i < drivers.size(); i++) {
+            withId(drivers.get(i), (long) i + 1);
+        }
+
+        when(waltService.getDriverRankReport())
+                .thenReturn(List.of(new DriverTotalDistance(drivers.get(0), 30.0),
+                                    new DriverTotalDistance(drivers.get(1), 20.0),
+                                    new DriverTotalDistance(drivers.get(2), 10.0)));
+
+        MvcResult asyncResult = mockMvc.perform(get(ENDPOINT_REPORT).param("offset", "1"))
+                                       .andExpect(request().asyncStarted())
+                                       .andExpect(header().exists(HttpHeaders.ETAG))
+                                       .andExpect(header().doesNotExist(HttpHeaders.LINK))
+                                       .andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
+               .andExpect(status().isOk())
+               .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+               .andExpect(jsonPath("$.length()").value(2))
+               .andExpect(jsonPath("$[0].rank").value(2))
+               .andExpect(jsonPath("$[0].driverId").value(2))
+               .andExpect(jsonPath("$[0].driverName").value(drivers.get(1).getName()))
+               .andExpect(jsonPath("$[0].cityName").value(drivers.get(1).getCity().getName()))
+               .andExpect(jsonPath("$[1].rank").value(3))
+               .andExpect(jsonPath("$[1].totalDistance").value(10.0));
+        String eTag = asyncResult.getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get(ENDPOINT_REPORT).param("offset", "1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isNotModified());
+
+        verify(waltService, times(1)).getDriverRankReport();
+        verify(waltService, never()).getDriverLeaderboard(any(int.class), any(int.class));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestRankReportOfCityWithLimit_onlyThatPageIsRead_andLinksToTheNextOne() {
+        List<Driver> drivers = createRandomDrivers(2);
+        City city = drivers.get(0).getCity();
+        withId(drivers.get(0), 7L);
+        withId(drivers.get(1), 8L);
+
+        when(waltService.getCity(city.getName())).thenReturn(city);
+        when(waltService.getDriverLeaderboardByCity(city, 4, 2))
+                .thenReturn(List.of(new DriverTotalDistance(drivers.get(0), 42.0),
+                                    new DriverTotalDistance(drivers.get(1), 21.0)));
+
+        MvcResult asyncResult = mockMvc.perform(get(ENDPOINT_REPORT + "/{cityName}", city.getName())
+                                                        .param("offset", "4")
+                                                        .param("limit", "1"))
+                                       .andExpect(request().asyncStarted())
+                                       .andExpect(header().string(HttpHeaders.LINK, containsString(
+                                               "offset=5&limit=1>; rel=\"next\"")))
+                                       .andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.length()").value(1))
+               .andExpect(jsonPath("$[0].rank").value(5))
+               .andExpect(jsonPath("$[0].driverName").value(drivers.get(0).getName()))
+               .andExpect(jsonPath("$[0].totalDistance").value(42.0));
+        mockMvc.perform(get(ENDPOINT_REPORT + "/{cityName}", city.getName())
+                                .param("limit", "100000"))
+               .andExpect(request().asyncStarted())
+               .andExpect(header().doesNotExist(HttpHeaders.LINK));
+
+        verify(waltService).getDriverLeaderboardByCity(city, 0, 1001);
+        verify(waltService, never()).getDriverRankReportByCity(any());
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestRankReportOfUnknownCity_responseNotFound_evenWithTheCurrentETag() {
+        when(waltService.getCity(any(String.class))).thenThrow(new NoSuchCityException());
+        String eTag = mockMvc.perform(get(ENDPOINT_REPORT))
+                             .andExpect(request().asyncStarted())
+                             .andReturn()
+                             .getResponse()
+                             .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(ENDPOINT_REPORT + "/{cityName}", createRandomCity().getName())
+                                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isNotFound());
+        verify(waltService, never()).getDriverRankReportByCity(any());
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestCityAnalytics_responseOk_withRollups() {
+        String cityName = createRandomCity().getName();
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime to = from.plusDays(7);
+
+        when(rollupService.getCityRollups(cityName, RollupGranularity.DAY, from, to))
+                .thenReturn(List.of(new DeliveryRollup(from, 4, 10.0)));
+
+        mockMvc.perform(get(ENDPOINT_CITY_ANALYTICS + "/{cityName}", cityName)
+                                .param("granularity", "DAY")
+                                .param("from", from.toString())
+                                .param("to", to.toString()))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[0].deliveryCount").value(4))
+               .andExpect(jsonPath("$[0].averageDistance").value(2.5));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestNearestDriver_andDriverFound_responseOk_withDriver() {
+        Driver driver = createRandomDriver();
+        GeoLocation location = new GeoLocation(32.0853, 34.7818);
+        LocalDateTime randomDeliveryTime = createRandomDeliveryTime();
+
+        when(waltService.locateNearestDriverForDeliveryAt(driver.getCity().getName(), location, randomDeliveryTime))
+                .thenReturn(Optional.of(driver));
+
+        mockMvc.perform(get(ENDPOINT_NEAREST_DRIVER + "/{cityName}/{deliveryTime}",
+                            driver.getCity().getName(),
+                            randomDeliveryTime)
+                                .param("latitude", "32.0853")
+                                .param("longitude", "34.7818"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.name").value(driver.getName()));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestAvailableDrivers_overALongRange_theRangeIsCutToAWeek() {
+        Driver driver = createRandomDriver();
+        LocalDateTime from = createRandomDeliveryTime();
+        List<SlotAvailability> slots = List.of(new SlotAvailability(from, List.of(NamedEntityRef.of(driver))));
+
+        when(waltService.getAvailableDrivers(driver.getCity().getName(), from, from.plusDays(7))).thenReturn(slots);
+
+        mockMvc.perform(get(ENDPOINT_AVAILABLE_DRIVERS + "/{cityName}", driver.getCity().getName())
+                                .param("from", from.toString())
+                                .param("to", from.plusDays(30).toString()))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[0].freeDriverCount").value(1))
+               .andExpect(jsonPath("$[0].freeDrivers[0].name").value(driver.getName()));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenPostingBatchOfOrders_responseIsOK_withResultPerOrder() {
+        OrderRequest assignedOrder = new OrderRequest("Dana", "Herzl 1", "Hummus", createRandomDeliveryTime());
+        OrderRequest rejectedOrder = new OrderRequest("Dana", "Herzl 1", "Hummus", createRandomDeliveryTime());
+        Delivery delivery = createRandomDelivery();
+        List<OrderResult> results = List.of(OrderResult.assigned(assignedOrder, delivery),
+                                            OrderResult.rejected(rejectedOrder, "There are no available drivers"));
+
+        when(waltService.createOrdersAndAssignDrivers(any())).thenReturn(results);
+
+        mockMvc.perform(post(ENDPOINT_BATCH_ORDERS)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(List.of(assignedOrder, rejectedOrder))))
+               .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.length()").value(results.size()))
+               .andExpect(jsonPath("$[0].assigned").value(true))
+               .andExpect(jsonPath("$[0].delivery.driver.name").value(delivery.getDriver().getName()))
+               .andExpect(jsonPath("$[0].delivery.driver.city").doesNotExist())
+               .andExpect(jsonPath("$[1].error").value("There are no available drivers"));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenSubmittingAnOrder_responseIsAccepted_withOrderIdAndStatusLocation() {
+        OrderRequest order = new OrderRequest("Dana", "Herzl 1", "Hummus", createRandomDeliveryTime());
+
+        when(orderIntakeService.submit(any())).thenReturn(42L);
+
+        mockMvc.perform(post(ENDPOINT_ORDERS)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(order)))
+               .andExpect(status().isAccepted())
+               .andExpect(header().string("Location", "http://localhost/api/orders/42"))
+               .andExpect(jsonPath("$.orderId").value(42))
+               .andExpect(jsonPath("$.state").value("QUEUED"));
+    }
+
+    @SneakyThrows
+    @Test
+    public void whenSubmittingAnOrderWithBasicAuth_noCsrfTokenIsNeeded_andNoSessionIsCreated() {
+        OrderRequest order = new OrderRequest("Dana", "Herzl 1", "Hummus", createRandomDeliveryTime());
+
+        when(orderIntakeService.submit(any())).thenReturn(42L);
+
+        MvcResult result = mockMvc.perform(post(ENDPOINT_ORDERS)
+                                                   .with(httpBasic("avirany", "password"))
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .content(objectMapper.writeValueAsString(order)))
+                                  .andExpect(status().isAccepted())
+                                  .andReturn();
+
+        assertNull(result.getRequest().getSession(false));
+        mockMvc.perform(post(ENDPOINT_ORDERS)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(order)))
+               .andExpect(status().isUnauthorized());
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenOrderQueueIsFull_responseIsTooManyRequests() {
+        OrderRequest order = new OrderRequest("Dana", "Herzl 1", "Hummus", createRandomDeliveryTime());
+
+        when(orderIntakeService.submit(any())).thenThrow(new OrderQueueFullException());
+
+        mockMvc.perform(post(ENDPOINT_ORDERS)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(order)))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().exists("Retry-After"));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenPollingOrderStatus_responseIsOK_orNotFoundForUnknownOrders() {
+        when(orderIntakeService.getStatus(42L)).thenReturn(Optional.of(OrderStatus.rejected(42L, "There are no available drivers")));
+        when(orderIntakeService.getStatus(43L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get(ENDPOINT_ORDERS + "/{orderId}", 42))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.state").value("REJECTED"))
+               .andExpect(jsonPath("$.error").value("There are no available drivers"));
+        mockMvc.perform(get(ENDPOINT_ORDERS + "/{orderId}", 43))
+               .andExpect(status().isNotFound());
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestDeliveriesPage_responseIsOK_withItemsAndNextCursor() {
+        List<DeliverySummary> deliveries = createRandomDeliverySummaries(2);
+
+        when(waltService.getDeliveries(10L, 2)).thenReturn(new CursorPage<>(deliveries, 12L));
+
+        mockMvc.perform(get(ENDPOINT_DELIVERIES).param("after", "10").param("limit", "2"))
+               .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.items.length()").value(deliveries.size()))
+               .andExpect(jsonPath("$.nextCursor").value(12));
+    }
+
+    @WithMockUser
+    @SneakyThrows
+    @Test
+    public void whenRequestDriversAsNdjson_responseStreamsOneDriverPerLine() {
+        List<DriverSummary> drivers = createRandomDriverSummaries(3);
+
+        doAnswer(invocation -> {
+            Consumer<DriverSummary> consumer = invocation.getArgument(0);
+            drivers.forEach(consumer);
+            return null;
+        }).when(waltService).streamDrivers(any());
+
+        MvcResult asyncResult = mockMvc.perform(get(ENDPOINT_DRIVERS).accept(MediaType.APPLICATION_NDJSON))
+                                       .andExpect(request().asyncStarted())
+                                       .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(asyncResult))
+                             .andExpect(status().isOk())
+                             .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                             .andReturn()
+                             .getResponse()
+                             .getContentAsString();
+
+        assertEquals(drivers.size(), body.split("\n").length);
+        assertEquals(drivers.get(0).getName(), objectMapper.readTree(body.split("\n")[0]).get("name").asText());
+    }
+
+    private List<DeliverySummary> createRandomDeliverySummaries(int totalDeliveries) {
+        return createRandomDeliveries(totalDeliveries).stream()
+                                                      .map(DeliverySummary::of)
+                                                      .collect(Collectors.toList());
+    }
 
     private List<Delivery> createRandomDeliveries(int totalDeliveries) {
         return IntStream.range(0, totalDeliveries)
@@ -200,6 +605,12 @@ public class WaltControllerTest {
                        .build();
     }
 
+    private List<DriverSummary> createRandomDriverSummaries(int totalDrivers) {
+        return createRandomDrivers(totalDrivers).stream()
+                                                .map(DriverSummary::of)
+                                                .collect(Collectors.toList());
+    }
+
     private List<Driver> createRandomDrivers(int totalDrivers) {
         return IntStream.range(0, totalDrivers)
                         .mapToObj(__ -> createRandomDriver())
@@ -0,0 +1,92 @@
+package com.walt.service;
+
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DeliveryRollupRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.entity.City;
+import com.walt.entity.Customer;
+import com.walt.entity.Delivery;
+import com.walt.entity.DeliveryRollup;
+import com.walt.entity.Driver;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.Restaurant;
+import com.walt.entity.RollupGranularity;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:rollups;MODE=MYSQL")
+public class DeliveryRollupServiceTest {
+
+    @Autowired
+    private WaltService waltService;
+    @Autowired
+    private DeliveryRollupService rollupService;
+    @Autowired
+    private DeliveryRollupRepository rollupRepository;
+    @Autowired
+    private CityRepository cityRepository;
+    @Autowired
+    private DriverRepository driverRepository;
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    public void whenDeliveriesAreSaved_shouldAnswerRangeQueriesFromTheRollups() {
+        City city = cityRepository.save(new City("Nazareth"));
+        driverRepository.save(new Driver("Nazareth-driver", city));
+        driverRepository.save(new Driver("Nazareth-driver-2", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Tishreen", city, "Paulus 6"));
+        Customer customer = customerRepository.save(new Customer("Rami", city, "Casanova 12"));
+        LocalDateTime morning = LocalDateTime.of(2030, 3, 5, 9, 15);
+
+        waltService.createOrderAndAssignDriver(customer, restaurant, morning);
+        waltService.createOrderAndAssignDriver(customer, restaurant, morning.plusMinutes(10));
+        waltService.createOrdersAndAssignDrivers(List.of(
+                new OrderRequest("Rami", "Casanova 12", "Tishreen", morning.plusHours(3))));
+
+        List<DeliveryRollup> hours = rollupService.getCityRollups("Nazareth", RollupGranularity.HOUR,
+                                                                  morning, morning.plusDays(1));
+        List<DeliveryRollup> days = rollupService.getCityRollups("Nazareth", RollupGranularity.DAY,
+                                                                 morning, morning.plusDays(1));
+        List<DeliveryRollup> driverWeeks = rollupService.getDriverRollups("Nazareth-driver", RollupGranularity.WEEK,
+                                                                          morning, morning.plusDays(1));
+
+        assertEquals(2, hours.size());
+        assertEquals(morning.withMinute(0), hours.get(0).getBucketStart());
+        assertEquals(2, hours.get(0).getDeliveryCount());
+        assertEquals(1, hours.get(1).getDeliveryCount());
+        assertEquals(1, days.size());
+        assertEquals(3, days.get(0).getDeliveryCount());
+        assertEquals(1, driverWeeks.size());
+        assertEquals(LocalDateTime.of(2030, 3, 4, 0, 0), driverWeeks.get(0).getBucketStart());
+        assertEquals(2, driverWeeks.get(0).getDeliveryCount());
+    }
+
+    @Test
+    public void whenRollupsAreCompacted_shouldDropExpiredHourlyBucketsOnly() {
+        City city = cityRepository.save(new City("Acre"));
+        Driver driver = driverRepository.save(new Driver("Acre-driver", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Uri Buri", city, "Haganah 11"));
+        LocalDateTime longAgo = LocalDateTime.now().minusDays(60);
+        rollupRepository.add(List.of(new Delivery(driver, restaurant, null, longAgo, 7)));
+
+        rollupService.compact();
+
+        assertTrue(rollupService.getCityRollups("Acre", RollupGranularity.HOUR, longAgo, longAgo.plusDays(1))
+                                .isEmpty());
+        assertEquals(7, rollupService.getCityRollups("Acre", RollupGranularity.DAY, longAgo, longAgo.plusDays(1))
+                                     .get(0).getTotalDistance());
+    }
+}
@@ -0,0 +1,97 @@
+package com.walt.service;
+
+import com.walt.entity.Delivery;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
+import com.walt.entity.OrderStatus;
+import com.walt.exceptions.OrderQueueFullException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {"walt.orders.intake.queue-capacity=1", "walt.orders.intake.workers=1"})
+public class OrderIntakeServiceTest {
+
+    private static final long POLL_TIMEOUT_MILLIS = 10_000;
+
+    @Autowired
+    private OrderIntakeService orderIntakeService;
+    @MockBean
+    private WaltService waltService;
+
+    @Test
+    public void whenQueueIsFull_shouldRejectTheOrderAndCompleteTheQueuedOnesLater() throws Exception {
+        CountDownLatch workerBusy = new CountDownLatch(1);
+        CountDownLatch releaseWorker = new CountDownLatch(1);
+        when(waltService.createOrdersAndAssignDrivers(any())).thenAnswer(invocation -> {
+            workerBusy.countDown();
+            releaseWorker.await(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            List<OrderRequest> orders = invocation.getArgument(0);
+            return orders.stream()
+                         .map(order -> OrderResult.assigned(order, new Delivery()))
+                         .collect(Collectors.toList());
+        });
+
+        long takenOrder = orderIntakeService.submit(order());
+        assertTrue(workerBusy.await(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        long queuedOrder = orderIntakeService.submit(order());
+
+        assertThrows(OrderQueueFullException.class, () -> orderIntakeService.submit(order()));
+        assertEquals(OrderStatus.State.QUEUED, orderIntakeService.getStatus(queuedOrder).orElseThrow().getState());
+
+        releaseWorker.countDown();
+
+        assertEquals(OrderStatus.State.ASSIGNED, awaitCompletion(takenOrder).getState());
+        assertEquals(OrderStatus.State.ASSIGNED, awaitCompletion(queuedOrder).getState());
+    }
+
+    @Test
+    public void whenBatchFailsWithAnError_shouldRejectItGenericallyAndKeepTheWorkerAlive() throws Exception {
+        when(waltService.createOrdersAndAssignDrivers(any()))
+                .thenThrow(new StackOverflowError("select * from delivery"))
+                .thenAnswer(invocation -> {
+                    List<OrderRequest> orders = invocation.getArgument(0);
+                    return List.of(OrderResult.assigned(orders.get(0), new Delivery()));
+                });
+
+        OrderStatus failed = awaitCompletion(orderIntakeService.submit(order()));
+        assertEquals(OrderStatus.State.REJECTED, failed.getState());
+        assertFalse(failed.getError().contains("select"));
+
+        assertEquals(OrderStatus.State.ASSIGNED, awaitCompletion(orderIntakeService.submit(order())).getState());
+    }
+
+    @Test
+    public void whenOrderIdIsUnknown_shouldHaveNoStatus() {
+        assertTrue(orderIntakeService.getStatus(-1).isEmpty());
+    }
+
+    private OrderStatus awaitCompletion(long orderId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + POLL_TIMEOUT_MILLIS;
+        OrderStatus status = orderIntakeService.getStatus(orderId).orElseThrow();
+        while (status.getState() == OrderStatus.State.QUEUED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = orderIntakeService.getStatus(orderId).orElseThrow();
+        }
+        return status;
+    }
+
+    private static OrderRequest order() {
+        return new OrderRequest("Dana", "Herzl 1", "Hummus", LocalDateTime.now().plusDays(1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.walt.service;
+
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.entity.City;
+import com.walt.entity.Customer;
+import com.walt.entity.Delivery;
+import com.walt.entity.Driver;
+import com.walt.entity.DriverBooking;
+import com.walt.entity.Restaurant;
+import com.walt.exceptions.NoDriverFoundException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:concurrency;MODE=MYSQL")
+public class WaltServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int DRIVERS = 8;
+    private static final int DELIVERY_SLOTS = 12;
+    private static final int ORDERS_PER_SLOT = 30;
+
+    @Autowired
+    private WaltService waltService;
+    @Autowired
+    private CityRepository cityRepository;
+    @Autowired
+    private DriverRepository driverRepository;
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private DeliveryRepository deliveryRepository;
+
+    @Test
+    public void whenOrdersRaceForTheSameSlots_noDriverIsDoubleBooked() throws Exception {
+        City city = cityRepository.save(new City("Haifa"));
+        IntStream.range(0, DRIVERS)
+                 .forEach(i -> driverRepository.save(new Driver("Haifa-driver-" + i, city)));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Falafel", city, "Herzl 1"));
+        Customer customer = customerRepository.save(new Customer("Noa", city, "Hanassi 10"));
+        LocalDateTime firstSlot = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+        AtomicInteger rejectedOrders = new AtomicInteger();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int order = 0; order < DELIVERY_SLOTS * ORDERS_PER_SLOT; order++) {
+            LocalDateTime deliveryTime = firstSlot.plusHours(order % DELIVERY_SLOTS);
+            futures.add(executor.submit(() -> {
+                startGate.await();
+                try {
+                    waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime);
+                } catch (NoDriverFoundException e) {
+                    rejectedOrders.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        startGate.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<DriverBooking> bookings = deliveryRepository.findBookingsByCity(city);
+        Set<DriverBooking> distinctBookings = Set.copyOf(bookings);
+
+        assertEquals(DRIVERS * DELIVERY_SLOTS, bookings.size(), "Every driver should fill every slot");
+        assertEquals(bookings.size(), distinctBookings.size(), "A driver was booked twice for a slot");
+        assertEquals(DELIVERY_SLOTS * ORDERS_PER_SLOT - bookings.size(), rejectedOrders.get());
+    }
+
+    @Test
+    public void whenSameDriverIsSavedTwiceForTheSameTime_databaseRejectsIt() {
+        City city = cityRepository.save(new City("Eilat"));
+        Driver driver = driverRepository.save(new Driver("Eilat-driver", city));
+        Restaurant restaurant = restaurantRepository.save(new Restaurant("Fish", city, "Hatmarim 3"));
+        Customer customer = customerRepository.save(new Customer("Yael", city, "Hadekel 7"));
+        LocalDateTime deliveryTime = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+        deliveryRepository.save(new Delivery(driver, restaurant, customer, deliveryTime, 1));
+
+        assertThrows(DataIntegrityViolationException.class,
+                     () -> deliveryRepository.save(new Delivery(driver, restaurant, customer, deliveryTime, 2)));
+    }
+}
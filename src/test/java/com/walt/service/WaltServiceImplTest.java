@@ -1,33 +1,59 @@
 package com.walt.service;
 
+import com.walt.dao.CityRepository;
 import com.walt.dao.DeliveryRepository;
 import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
 import com.walt.entity.City;
 import com.walt.entity.Customer;
 import com.walt.entity.Delivery;
 import com.walt.entity.Driver;
+import com.walt.entity.DriverBooking;
+import com.walt.entity.DriverDeliveryStats;
 import com.walt.entity.DriverDistance;
+import com.walt.entity.GeoLocation;
+import com.walt.entity.NamedEntityRef;
+import com.walt.entity.OrderRequest;
+import com.walt.entity.OrderResult;
 import com.walt.entity.Restaurant;
+import com.walt.entity.SlotAvailability;
 import com.walt.exceptions.NoDriverFoundException;
+import com.walt.exceptions.NoSuchCityException;
+import com.walt.exceptions.NoSuchRestaurantException;
+import com.walt.index.DriverAvailabilityIndex;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.QueryTimeoutException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static com.walt.entity.TestEntities.withId;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -40,8 +66,27 @@ public class WaltServiceImplTest {
     private DriverRepository driverRepository;
     @MockBean
     private DeliveryRepository deliveryRepository;
+    @MockBean
+    private DeliveryRollupService rollupService;
+    @Autowired
+    private DriverAvailabilityIndex availabilityIndex;
+    @Autowired
+    private CityRepository cityRepository;
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private DataVersion dataVersion;
     @Captor
     private ArgumentCaptor<Delivery> argumentCaptor;
+    @Captor
+    private ArgumentCaptor<List<Delivery>> deliveriesCaptor;
+
+    @BeforeEach
+    public void resetAvailabilityIndex() {
+        availabilityIndex.evictAll();
+    }
 
     @Test
     public void whenNoDriverFoundInCity_shouldThrow() {
@@ -57,7 +102,7 @@ public class WaltServiceImplTest {
     @Test
     public void whenAvailableDriverForDelivery_shouldCreateAndSaveDelivery() {
         City city = new City("TelAviv");
-        Driver driver = new Driver("Moshe", city);
+        Driver driver = withId(new Driver("Moshe", city), 1L);
         Customer customer = new Customer("David", city, "Borochov");
         Restaurant restaurant = new Restaurant("Japan-Japan", city, "Hahagana 21");
         LocalDateTime deliveryTimeNow = LocalDateTime.now();
@@ -81,9 +126,7 @@ public class WaltServiceImplTest {
                 Lists.newArrayList(driver)
         );
 
-        when(deliveryRepository.findAllByDriver(any())).thenReturn(
-                Lists.newArrayList(deliveryNow)
-        );
+        stubCityDeliveries(deliveryNow);
 
         waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTimeTomorrow);
 
@@ -97,7 +140,7 @@ public class WaltServiceImplTest {
     @Test
     public void whenAvailableDriverIsOccupiedAtAGivenTime_shouldThrow() {
         City city = new City("TelAviv");
-        Driver driver = new Driver("Moshe", city);
+        Driver driver = withId(new Driver("Moshe", city), 1L);
         Customer customer = new Customer("David", city, "Borochov");
         Restaurant restaurant = new Restaurant("Japan-Japan", city, "Hahagana 21");
         LocalDateTime deliveryTimeNow = LocalDateTime.now();
@@ -114,9 +157,7 @@ public class WaltServiceImplTest {
                 Lists.newArrayList(driver)
         );
 
-        when(deliveryRepository.findAllByDriver(any())).thenReturn(
-                Lists.newArrayList(deliveryNow)
-        );
+        stubCityDeliveries(deliveryNow);
 
         assertThrows(NoDriverFoundException.class,
                      () -> waltService.createOrderAndAssignDriver(customer,
@@ -127,8 +168,8 @@ public class WaltServiceImplTest {
     @Test
     public void whenPluralAvailableDrivers_shouldReturnLeastBusy() {
         City city = new City("TelAviv");
-        Driver busyDriver = new Driver("Moshe", city);
-        Driver leaseBusyDriver = new Driver("David", city);
+        Driver busyDriver = withId(new Driver("Moshe", city), 1L);
+        Driver leaseBusyDriver = withId(new Driver("David", city), 2L);
         Customer customer = new Customer("David", city, "Borochov");
         Restaurant restaurant = new Restaurant("Japan-Japan", city, "Hahagana 21");
         LocalDateTime deliveryTimeNow = LocalDateTime.now();
@@ -159,13 +200,7 @@ public class WaltServiceImplTest {
                 Lists.newArrayList(busyDriver, leaseBusyDriver)
         );
 
-        when(deliveryRepository.findAllByDriver(busyDriver)).thenReturn(
-                Lists.newArrayList(driver1Delivery1, driver1Delivery2)
-        );
-
-        when(deliveryRepository.findAllByDriver(leaseBusyDriver)).thenReturn(
-                Lists.newArrayList(driver2Delivery1)
-        );
+        stubCityDeliveries(driver1Delivery1, driver1Delivery2, driver2Delivery1);
 
         waltService.createOrderAndAssignDriver(customer, restaurant, tomorrow());
 
@@ -182,9 +217,9 @@ public class WaltServiceImplTest {
     public void whenRankDriverIsCalled_shouldReturnDescDriverDistanceSortedList() {
         City city = new City("Jerusalem");
         Customer customer = new Customer("Daniel", city, "Hertsel 53");
-        Driver driver1 = new Driver("Eli", city);
-        Driver driver2 = new Driver("Dafna", city);
-        Driver driver3 = new Driver("David", city);
+        Driver driver1 = withId(new Driver("Eli", city), 1L);
+        Driver driver2 = withId(new Driver("Dafna", city), 2L);
+        Driver driver3 = withId(new Driver("David", city), 3L);
 
 
         Restaurant restaurant = new Restaurant("Tamara", city, "Agudat Hapoel 2");
@@ -245,17 +280,9 @@ public class WaltServiceImplTest {
 
         when(driverRepository.findAll()).thenReturn(allDrivers);
 
-        when(deliveryRepository.findAllByDriver(driver1)).thenReturn(
-                Lists.newArrayList(driver1Delivery1, driver1Delivery2)
-        );
-
-        when(deliveryRepository.findAllByDriver(driver2)).thenReturn(
-                Lists.newArrayList(driver2Delivery1, driver2Delivery2)
-        );
-
-        when(deliveryRepository.findAllByDriver(driver3)).thenReturn(
-                Lists.newArrayList(driver3Delivery1, driver3Delivery2)
-        );
+        stubAllDeliveries(driver1Delivery1, driver1Delivery2,
+                          driver2Delivery1, driver2Delivery2,
+                          driver3Delivery1, driver3Delivery2);
 
         List<DriverDistance> driverRankReport = waltService.getDriverRankReport();
 
@@ -273,9 +300,9 @@ public class WaltServiceImplTest {
     public void whenRankDriverFromCityIsCalled_shouldReturnDescDriverDistanceSortedList() {
         City city = new City("Jerusalem");
         Customer customer = new Customer("Daniel", city, "Hertsel 53");
-        Driver driver1 = new Driver("Eli", city);
-        Driver driver2 = new Driver("Dafna", city);
-        Driver driver3 = new Driver("David", city);
+        Driver driver1 = withId(new Driver("Eli", city), 1L);
+        Driver driver2 = withId(new Driver("Dafna", city), 2L);
+        Driver driver3 = withId(new Driver("David", city), 3L);
 
         Restaurant restaurant = new Restaurant("Tamara", city, "Agudat Hapoel 2");
         LocalDateTime deliveryTimeNow = LocalDateTime.now();
@@ -333,19 +360,11 @@ public class WaltServiceImplTest {
 
         when(driverRepository.findAllDriversByCity(eq(city))).thenReturn(allDrivers);
 
-        when(deliveryRepository.findAllByDriver(driver1)).thenReturn(
-                Lists.newArrayList(driver1Delivery1, driver1Delivery2)
-        );
-
-        when(deliveryRepository.findAllByDriver(driver2)).thenReturn(
-                Lists.newArrayList(driver2Delivery1, driver2Delivery2)
-        );
-
-        when(deliveryRepository.findAllByDriver(driver3)).thenReturn(
-                Lists.newArrayList(driver3Delivery1, driver3Delivery2)
-        );
+        stubCityDeliveries(driver1Delivery1, driver1Delivery2,
+                           driver2Delivery1, driver2Delivery2,
+                           driver3Delivery1, driver3Delivery2);
 
-        List<DriverDistance> driverRankReport = waltService.getDriverRankReport();
+        List<DriverDistance> driverRankReport = waltService.getDriverRankReportByCity(city);
 
         List<Double> resultDistances = driverRankReport.stream()
                                                        .map(DriverDistance::getTotalDistance)
@@ -357,7 +376,289 @@ public class WaltServiceImplTest {
         assertEquals(copyResultDistances, resultDistances, "List is not sorted!");
     }
 
+    @Test
+    public void whenBatchOfOrdersIsCreated_shouldAssignLeastBusyDriversAndReportFailuresPerOrder() {
+        City city = cityRepository.save(new City("Ashdod"));
+        restaurantRepository.save(new Restaurant("Hummus", city, "Rogozin 4"));
+        Driver busyDriver = withId(new Driver("Moshe", city), 1L);
+        Driver leastBusyDriver = withId(new Driver("David", city), 2L);
+        LocalDateTime deliveryTime = tomorrow();
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(
+                Lists.newArrayList(busyDriver, leastBusyDriver)
+        );
+        when(deliveryRepository.findDeliveryStatsByCity(any())).thenReturn(
+                Lists.newArrayList(new DriverDeliveryStats(1L, 5L, 50.0),
+                                   new DriverDeliveryStats(2L, 1L, 10.0))
+        );
+
+        List<OrderResult> results = waltService.createOrdersAndAssignDrivers(Lists.newArrayList(
+                new OrderRequest("Dana", "Herzl 1", "Hummus", deliveryTime),
+                new OrderRequest("Dana", "Herzl 1", "Hummus", deliveryTime),
+                new OrderRequest("Dana", "Herzl 1", "Hummus", deliveryTime),
+                new OrderRequest("Dana", "Herzl 1", "No-Such-Restaurant", deliveryTime)
+        ));
+
+        verify(deliveryRepository).insertAll(deliveriesCaptor.capture());
+
+        assertEquals(2, deliveriesCaptor.getValue().size());
+        assertEquals(NamedEntityRef.of(leastBusyDriver), results.get(0).getDelivery().getDriver());
+        assertEquals(NamedEntityRef.of(busyDriver), results.get(1).getDelivery().getDriver());
+        assertEquals(new NoDriverFoundException().getMessage(), results.get(2).getError());
+        assertEquals(new NoSuchRestaurantException().getMessage(), results.get(3).getError());
+    }
+
+    @Test
+    public void whenBatchInsertFails_shouldReleaseTheReservedDrivers() {
+        City city = cityRepository.save(new City("Kiryat Gat"));
+        restaurantRepository.save(new Restaurant("Falafel", city, "Lachish 3"));
+        Driver driver = withId(new Driver("Avi", city), 1L);
+        LocalDateTime deliveryTime = tomorrow();
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver));
+        doThrow(new QueryTimeoutException("insert timed out")).when(deliveryRepository).insertAll(any());
+
+        assertThrows(QueryTimeoutException.class, () -> waltService.createOrdersAndAssignDrivers(Lists.newArrayList(
+                new OrderRequest("Dana", "Herzl 1", "Falafel", deliveryTime)
+        )));
+
+        assertEquals(Optional.of(driver), waltService.locateDriverForDeliveryAt("Kiryat Gat", deliveryTime));
+    }
+
+    @Test
+    public void whenRollupUpdateFails_shouldStillAssignTheSavedOrder() {
+        City city = new City("Dimona");
+        Driver driver = withId(new Driver("Eli", city), 1L);
+        Customer customer = new Customer("David", city, "Borochov");
+        Restaurant restaurant = new Restaurant("Japan-Japan", city, "Hahagana 21");
+        long dataVersionBefore = dataVersion.current();
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver));
+        when(deliveryRepository.save(any())).then(returnsFirstArg());
+        doThrow(new QueryTimeoutException("upsert timed out")).when(rollupService).record(any());
+
+        Delivery delivery = waltService.createOrderAndAssignDriver(customer, restaurant, tomorrow());
+
+        assertEquals(driver, delivery.getDriver());
+        assertTrue(dataVersion.current() > dataVersionBefore);
+    }
+
+    @Test
+    public void whenDeliveryWindowOverlapsABooking_shouldThrow() {
+        City city = new City("Haifa");
+        Driver driver = withId(new Driver("Moshe", city), 1L);
+        Customer customer = new Customer("David", city, "Borochov");
+        Restaurant restaurant = new Restaurant("Japan-Japan", city, "Hahagana 21");
+        LocalDateTime bookedTime = tomorrow().withHour(11).withMinute(0);
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver));
+        stubCityDeliveries(new Delivery(driver, restaurant, customer, bookedTime, 5));
+
+        assertThrows(NoDriverFoundException.class,
+                     () -> waltService.createOrderAndAssignDriver(customer, restaurant, bookedTime.minusMinutes(30)));
+        assertThrows(NoDriverFoundException.class,
+                     () -> waltService.createOrderAndAssignDriver(customer, restaurant, bookedTime.plusMinutes(59)));
+    }
+
+    @Test
+    public void whenDeliveryWindowTouchesABooking_shouldAssignTheDriver() {
+        City city = new City("Haifa");
+        Driver driver = withId(new Driver("Moshe", city), 1L);
+        Customer customer = new Customer("David", city, "Borochov");
+        Restaurant restaurant = new Restaurant("Japan-Japan", city, "Hahagana 21");
+        LocalDateTime bookedTime = tomorrow().withHour(11).withMinute(30);
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver));
+        stubCityDeliveries(new Delivery(driver, restaurant, customer, bookedTime, 5));
+
+        waltService.createOrderAndAssignDriver(customer, restaurant, bookedTime.minusHours(1));
+        waltService.createOrderAndAssignDriver(customer, restaurant, bookedTime.plusHours(1));
+
+        verify(deliveryRepository, times(2)).save(argumentCaptor.capture());
+        assertEquals(driver, argumentCaptor.getAllValues().get(0).getDriver());
+        assertEquals(driver, argumentCaptor.getAllValues().get(1).getDriver());
+    }
+
+    @Test
+    public void whenBatchOrdersHaveShortDurations_shouldFitThemBackToBackOnOneDriver() {
+        City city = cityRepository.save(new City("Ashkelon"));
+        restaurantRepository.save(new Restaurant("Shawarma", city, "Ben Gurion 2"));
+        Driver driver = withId(new Driver("Yossi", city), 1L);
+        LocalDateTime deliveryTime = tomorrow().withHour(10).withMinute(0);
+        Duration halfAnHour = Duration.ofMinutes(30);
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver));
+
+        List<OrderResult> results = waltService.createOrdersAndAssignDrivers(Lists.newArrayList(
+                new OrderRequest("Dana", "Herzl 1", "Shawarma", deliveryTime, halfAnHour),
+                new OrderRequest("Dana", "Herzl 1", "Shawarma", deliveryTime.plus(halfAnHour), halfAnHour),
+                new OrderRequest("Dana", "Herzl 1", "Shawarma", deliveryTime.plusMinutes(45), halfAnHour),
+                new OrderRequest("Dana", "Herzl 1", "Shawarma", deliveryTime, Duration.ZERO)
+        ));
+
+        assertEquals(NamedEntityRef.of(driver), results.get(0).getDelivery().getDriver());
+        assertEquals(deliveryTime.plus(halfAnHour), results.get(0).getDelivery().getEndTime());
+        assertEquals(NamedEntityRef.of(driver), results.get(1).getDelivery().getDriver());
+        assertEquals(new NoDriverFoundException().getMessage(), results.get(2).getError());
+        assertFalse(results.get(3).isAssigned());
+    }
+
+    @Test
+    public void whenCityIsUnknown_shouldCountTheRejectedLookup() {
+        double rejectedLookups = errorCount("NoSuchCityException");
+
+        assertThrows(NoSuchCityException.class,
+                     () -> waltService.locateDriverForDeliveryAt("Atlantis", LocalDateTime.now()));
+
+        assertEquals(rejectedLookups + 1, errorCount("NoSuchCityException"));
+    }
+
+    @Test
+    public void whenOrderIsAssigned_shouldTimeMatchingAndSavingAndPublishCityGauges() {
+        City city = withId(new City("Modiin"), 1L);
+        Driver driver = withId(new Driver("Shira", city), 1L);
+        Customer customer = new Customer("Omer", city, "Emek Dotan 4");
+        Restaurant restaurant = new Restaurant("Shipudei", city, "Yigal Alon 1");
+        long matchings = timerCount(WaltMetrics.DRIVER_MATCHING);
+        long saves = timerCount(WaltMetrics.DELIVERY_SAVE);
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver));
+        stubCityDeliveries();
+
+        waltService.createOrderAndAssignDriver(customer, restaurant, tomorrow());
+
+        assertEquals(matchings + 1, timerCount(WaltMetrics.DRIVER_MATCHING));
+        assertEquals(saves + 1, timerCount(WaltMetrics.DELIVERY_SAVE));
+        assertEquals(1, meterRegistry.get(DriverAvailabilityIndex.CITY_DRIVERS).tag("city", "Modiin").gauge().value());
+        assertEquals(1, meterRegistry.get(DriverAvailabilityIndex.CITY_DELIVERIES).tag("city", "Modiin").gauge().value());
+    }
+
+    @Test
+    public void whenRestaurantAndCustomerHavePositions_shouldSaveTheirHaversineDistance() {
+        City city = new City("Jerusalem");
+        Driver driver = withId(new Driver("Avi", city), 1L);
+        Customer customer = new Customer("Tamar", city, "Jaffa 1");
+        customer.setLocation(new GeoLocation(31.7683, 35.2137));
+        Restaurant restaurant = new Restaurant("Benedict", city, "Rothschild 29");
+        restaurant.setLocation(new GeoLocation(32.0853, 34.7818));
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver));
+        stubCityDeliveries();
+
+        waltService.createOrderAndAssignDriver(customer, restaurant, tomorrow());
+
+        verify(deliveryRepository).save(argumentCaptor.capture());
+        assertEquals(54.1, argumentCaptor.getValue().getDistance(), 0.5);
+    }
+
+    @Test
+    public void whenDriversHavePositions_shouldLocateTheNearestAvailable() {
+        City city = cityRepository.save(new City("Netanya"));
+        Driver far = withId(new Driver("Far", city), 1L);
+        far.setLocation(new GeoLocation(32.2800, 34.8500));
+        Driver near = withId(new Driver("Near", city), 2L);
+        near.setLocation(new GeoLocation(32.3300, 34.8560));
+        Restaurant restaurant = new Restaurant("Pizza", city, "Herzl 5");
+        LocalDateTime deliveryTime = tomorrow();
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(far, near));
+        stubCityDeliveries(new Delivery(near, restaurant, new Customer(), deliveryTime, 5));
+
+        GeoLocation square = new GeoLocation(32.3286, 34.8567);
+        assertEquals(Optional.of(near),
+                     waltService.locateNearestDriverForDeliveryAt("Netanya", square, deliveryTime.plusHours(1)));
+        assertEquals(Optional.of(far),
+                     waltService.locateNearestDriverForDeliveryAt("Netanya", square, deliveryTime));
+    }
+
+    @Test
+    public void whenAvailabilityOfARangeIsAsked_shouldAgreeWithTheSingleSlotLookups() {
+        City city = cityRepository.save(new City("Kfar Saba"));
+        Driver driver1 = withId(new Driver("Noa", city), 1L);
+        Driver driver2 = withId(new Driver("Omer", city), 2L);
+        Restaurant restaurant = new Restaurant("Falafel", city, "Weizmann 100");
+        LocalDateTime from = tomorrow().truncatedTo(ChronoUnit.HOURS);
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver1, driver2));
+        stubCityDeliveries(new Delivery(driver1, restaurant, new Customer(), from, 4),
+                           new Delivery(driver1, restaurant, new Customer(), from.plusHours(2), 4),
+                           new Delivery(driver2, restaurant, new Customer(), from.plusHours(1), 4));
+
+        List<SlotAvailability> slots = waltService.getAvailableDrivers("Kfar Saba", from, from.plusHours(4));
+
+        assertEquals(4, slots.size());
+        for (SlotAvailability slot : slots) {
+            Optional<Driver> located = waltService.locateDriverForDeliveryAt("Kfar Saba", slot.getSlotStart());
+            assertEquals(located.map(Driver::getName),
+                         slot.getFreeDrivers().stream().findFirst().map(NamedEntityRef::getName));
+        }
+        assertEquals(2, slots.get(3).getFreeDriverCount());
+        assertTrue(waltService.getAvailableDrivers("Kfar Saba", from, from).isEmpty());
+    }
+
+    @Test
+    public void whenLeaderboardIsPaged_shouldReturnTheLongestDistancesFirst() {
+        City city = cityRepository.save(new City("Herzliya"));
+        Driver driver1 = withId(new Driver("Gal", city), 1L);
+        Driver driver2 = withId(new Driver("Lior", city), 2L);
+        Driver driver3 = withId(new Driver("Maya", city), 3L);
+        Customer customer = new Customer("Ron", city, "Sokolov 3");
+        Restaurant restaurant = new Restaurant("Burger", city, "Medinat Hayehudim 60");
+
+        when(driverRepository.findAllDriversByCity(any())).thenReturn(Lists.newArrayList(driver1, driver2, driver3));
+        stubCityDeliveries(new Delivery(driver1, restaurant, customer, tomorrow(), 3),
+                           new Delivery(driver2, restaurant, customer, tomorrow(), 9),
+                           new Delivery(driver3, restaurant, customer, tomorrow(), 6));
+
+        List<DriverDistance> top2 = waltService.getDriverLeaderboardByCity(city, 0, 2);
+        List<DriverDistance> third = waltService.getDriverLeaderboardByCity(city, 2, 2);
+
+        assertEquals(Lists.newArrayList(driver2, driver3),
+                     top2.stream().map(DriverDistance::getDriver).collect(Collectors.toList()));
+        assertEquals(1, third.size());
+        assertEquals(driver1, third.get(0).getDriver());
+    }
+
     private static LocalDateTime tomorrow() {
         return LocalDateTime.now().plusDays(1);
     }
-}
\ No newline at end of file
+
+    private void stubCityDeliveries(Delivery... deliveries) {
+        when(deliveryRepository.findDeliveryStatsByCity(any())).thenReturn(statsOf(deliveries));
+        when(deliveryRepository.findBookingsByCity(any())).thenReturn(bookingsOf(deliveries));
+    }
+
+    private void stubAllDeliveries(Delivery... deliveries) {
+        when(deliveryRepository.findDeliveryStats()).thenReturn(statsOf(deliveries));
+        when(deliveryRepository.findAllBookings()).thenReturn(bookingsOf(deliveries));
+    }
+
+    private static List<DriverDeliveryStats> statsOf(Delivery... deliveries) {
+        return Arrays.stream(deliveries)
+                     .collect(Collectors.groupingBy(delivery -> delivery.getDriver().getId()))
+                     .entrySet()
+                     .stream()
+                     .map(entry -> new DriverDeliveryStats(
+                             entry.getKey(),
+                             (long) entry.getValue().size(),
+                             entry.getValue().stream().mapToDouble(Delivery::getDistance).sum()))
+                     .collect(Collectors.toList());
+    }
+
+    private static List<DriverBooking> bookingsOf(Delivery... deliveries) {
+        return Arrays.stream(deliveries)
+                     .map(delivery -> new DriverBooking(delivery.getDriver().getId(),
+                                                        delivery.getDeliveryTime(),
+                                                        delivery.getEndTime()))
+                     .collect(Collectors.toList());
+    }
+
+
+    private double errorCount(String exception) {
+        return meterRegistry.get(WaltMetrics.ERRORS).tag("exception", exception).counter().count();
+    }
+
+    private long timerCount(String name) {
+        return meterRegistry.get(name).tag("mode", "single").timer().count();
+    }
+}